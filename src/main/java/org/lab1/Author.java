@@ -1,7 +1,9 @@
 package org.lab1;
 
-import java.util.ArrayList;
-import java.util.List;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.Set;
 
 /**
  * Represents an author in the books database.
@@ -13,7 +15,8 @@ public class Author {
     private int authorID;
     private String firstName;
     private String lastName;
-    private List<Book> bookList;
+    private int version;
+    private Set<Book> bookList;
 
     /**
      * Constructs an Author object with the given details.
@@ -26,7 +29,7 @@ public class Author {
         this.authorID = authorID;
         this.firstName = firstName;
         this.lastName = lastName;
-        this.bookList = new ArrayList<>();
+        this.bookList = new LinkedHashSet<>();
     }
     
     /**
@@ -84,12 +87,16 @@ public class Author {
     }
 
     /**
-     * Returns the list of books associated with the author.
+     * Returns the books associated with the author, in the order they were added.
+     * <p>
+     * The returned collection is read-only; use {@link #addBook(Book)} and
+     * {@link #removeBook(Book)} so that both sides of the relationship stay in sync.
+     * </p>
      *
      * @return the bookList
      */
-    public List<Book> getBookList() {
-        return bookList;
+    public Collection<Book> getBookList() {
+        return Collections.unmodifiableSet(bookList);
     }
 
     /**
@@ -99,14 +106,42 @@ public class Author {
      * @param book the Book to add
      */
     public void addBook(Book book) {
-        if (!bookList.contains(book)) {
-            bookList.add(book);
-            if (!book.getAuthorList().contains(this)) {
-                book.addAuthor(this);
-            }
+        if (bookList.add(book)) {
+            book.addAuthor(this);
         }
     }
 
+    /**
+     * Removes a book from the author's list if it is present.
+     * Also removes this author from the book's list to keep both sides of the relationship in sync.
+     *
+     * @param book the Book to remove
+     */
+    public void removeBook(Book book) {
+        if (bookList.remove(book)) {
+            book.removeAuthor(this);
+        }
+    }
+
+    /**
+     * Returns the version of the author as last read from or written to storage. Updates are
+     * only applied if the stored version still matches; see {@link BookDatabaseManager}.
+     *
+     * @return the version
+     */
+    public int getVersion() {
+        return version;
+    }
+
+    /**
+     * Sets the version of the author.
+     *
+     * @param version the new version
+     */
+    public void setVersion(int version) {
+        this.version = version;
+    }
+
     /**
      * Returns a string representation of the author, including the list of books.
      *
@@ -0,0 +1,392 @@
+package org.lab1;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.IntStream;
+
+/**
+ * A read-only snapshot of the author–book graph for co-authorship queries.
+ * <p>
+ * Authors and books are numbered with dense ordinals, and each side's neighbours are stored as
+ * compressed adjacency arrays ({@code offsets}/{@code targets}), so the graph uses a few ints
+ * per edge instead of the object lists in {@link Author} and {@link Book}. Searches keep their
+ * visited sets as {@code long[]} bitsets and advance one level at a time, from authors to
+ * books and back. A small frontier is kept as a list of ordinals and expanded top-down from its
+ * members; a large one is turned into a bitset and expanded bottom-up, where every unvisited
+ * vertex checks whether any neighbour is in the frontier. The bottom-up step writes each
+ * 64-vertex word from one task only, so on large graphs it runs in parallel without locking.
+ * </p>
+ * <p>
+ * One hop is author → book → author, so the co-authors of X are the authors within one hop.
+ * The snapshot does not change when the catalog does; build a new one with
+ * {@link #build(Collection, Collection)}.
+ * </p>
+ */
+public class AuthorGraph {
+    // below this many vertices on the target side a level is always expanded sequentially
+    private static final int PARALLEL_THRESHOLD = 1 << 16;
+    // a frontier holding less than 1/TOP_DOWN_RATIO of the source side is expanded top-down
+    private static final int TOP_DOWN_RATIO = 32;
+
+    private final Author[] authors;
+    private final Book[] books;
+    private final Map<Author, Integer> authorOrdinals;
+    private final int[] authorBookOffsets;
+    private final int[] authorBookTargets;
+    private final int[] bookAuthorOffsets;
+    private final int[] bookAuthorTargets;
+
+    /**
+     * A connected set of authors and books.
+     */
+    public static class Component {
+        private final List<Author> authors;
+        private final List<Book> books;
+
+        private Component(List<Author> authors, List<Book> books) {
+            this.authors = authors;
+            this.books = books;
+        }
+
+        /**
+         * Returns the authors in the component.
+         *
+         * @return the authors
+         */
+        public List<Author> getAuthors() {
+            return authors;
+        }
+
+        /**
+         * Returns the books in the component.
+         *
+         * @return the books
+         */
+        public List<Book> getBooks() {
+            return books;
+        }
+    }
+
+    private AuthorGraph(Author[] authors, Book[] books, Map<Author, Integer> authorOrdinals,
+                        int[] authorBookOffsets, int[] authorBookTargets,
+                        int[] bookAuthorOffsets, int[] bookAuthorTargets) {
+        this.authors = authors;
+        this.books = books;
+        this.authorOrdinals = authorOrdinals;
+        this.authorBookOffsets = authorBookOffsets;
+        this.authorBookTargets = authorBookTargets;
+        this.bookAuthorOffsets = bookAuthorOffsets;
+        this.bookAuthorTargets = bookAuthorTargets;
+    }
+
+    /**
+     * Builds a graph from the loaded authors and books and the relationships between them.
+     * Relationships to authors or books outside the given collections are ignored.
+     *
+     * @param allAuthors the authors
+     * @param allBooks   the books
+     * @return the graph
+     */
+    public static AuthorGraph build(Collection<Author> allAuthors, Collection<Book> allBooks) {
+        Author[] authors = allAuthors.toArray(new Author[0]);
+        Book[] books = allBooks.toArray(new Book[0]);
+        Map<Author, Integer> authorOrdinals = new HashMap<>(authors.length * 2);
+        for (int i = 0; i < authors.length; i++) {
+            authorOrdinals.put(authors[i], i);
+        }
+        int[] bookAuthorOffsets = new int[books.length + 1];
+        for (int b = 0; b < books.length; b++) {
+            int degree = 0;
+            for (Author author : books[b].getAuthorList()) {
+                if (authorOrdinals.containsKey(author)) {
+                    degree++;
+                }
+            }
+            bookAuthorOffsets[b + 1] = bookAuthorOffsets[b] + degree;
+        }
+        int[] bookAuthorTargets = new int[bookAuthorOffsets[books.length]];
+        int[] authorDegrees = new int[authors.length];
+        for (int b = 0; b < books.length; b++) {
+            int next = bookAuthorOffsets[b];
+            for (Author author : books[b].getAuthorList()) {
+                Integer a = authorOrdinals.get(author);
+                if (a != null) {
+                    bookAuthorTargets[next++] = a;
+                    authorDegrees[a]++;
+                }
+            }
+        }
+
+        int[] authorBookOffsets = new int[authors.length + 1];
+        for (int a = 0; a < authors.length; a++) {
+            authorBookOffsets[a + 1] = authorBookOffsets[a] + authorDegrees[a];
+        }
+        int[] authorBookTargets = new int[authorBookOffsets[authors.length]];
+        int[] fill = authorBookOffsets.clone();
+        for (int b = 0; b < books.length; b++) {
+            for (int i = bookAuthorOffsets[b]; i < bookAuthorOffsets[b + 1]; i++) {
+                authorBookTargets[fill[bookAuthorTargets[i]]++] = b;
+            }
+        }
+        return new AuthorGraph(authors, books, authorOrdinals, authorBookOffsets, authorBookTargets,
+                bookAuthorOffsets, bookAuthorTargets);
+    }
+
+    /**
+     * Returns the number of author–book relationships in the graph.
+     *
+     * @return the edge count
+     */
+    public int getEdgeCount() {
+        return authorBookTargets.length;
+    }
+
+    /**
+     * Returns the books written by co-authors of the given author, excluding the author's own books.
+     *
+     * @param author the author
+     * @return the books, in ordinal order; empty if the author is not in the graph
+     */
+    public List<Book> booksByCoAuthors(Author author) {
+        Integer start = authorOrdinals.get(author);
+        if (start == null) {
+            return Collections.emptyList();
+        }
+        long[] visitedAuthors = new long[words(authors.length)];
+        long[] visitedBooks = new long[words(books.length)];
+        set(visitedAuthors, start);
+        IntList ownBooks = toBooks(IntList.of(start), visitedBooks);
+        IntList coAuthors = toAuthors(ownBooks, visitedAuthors);
+        IntList result = toBooks(coAuthors, visitedBooks);
+        result.sort();
+        return result.map(books);
+    }
+
+    /**
+     * Returns the authors reachable from the given author in at most the given number of hops,
+     * not including the author itself.
+     *
+     * @param author the author to start from
+     * @param hops   the maximum number of author → book → author hops
+     * @return the authors, in ordinal order; empty if the author is not in the graph
+     */
+    public List<Author> authorsWithinHops(Author author, int hops) {
+        Integer start = authorOrdinals.get(author);
+        if (start == null) {
+            return Collections.emptyList();
+        }
+        long[] visitedAuthors = new long[words(authors.length)];
+        long[] visitedBooks = new long[words(books.length)];
+        set(visitedAuthors, start);
+        IntList frontier = IntList.of(start);
+        IntList reached = new IntList();
+        for (int hop = 0; hop < hops && frontier.size > 0; hop++) {
+            frontier = toAuthors(toBooks(frontier, visitedBooks), visitedAuthors);
+            reached.addAll(frontier);
+        }
+        reached.sort();
+        return reached.map(authors);
+    }
+
+    /**
+     * Returns the connected components of the graph, largest first. Books without authors
+     * form single-book components.
+     *
+     * @return the components
+     */
+    public List<Component> components() {
+        long[] visitedAuthors = new long[words(authors.length)];
+        long[] visitedBooks = new long[words(books.length)];
+        List<Component> components = new ArrayList<>();
+        for (int a = nextClear(visitedAuthors, 0, authors.length); a < authors.length;
+             a = nextClear(visitedAuthors, a + 1, authors.length)) {
+            set(visitedAuthors, a);
+            IntList componentAuthors = IntList.of(a);
+            IntList componentBooks = new IntList();
+            IntList frontier = IntList.of(a);
+            while (frontier.size > 0) {
+                IntList reachedBooks = toBooks(frontier, visitedBooks);
+                componentBooks.addAll(reachedBooks);
+                frontier = toAuthors(reachedBooks, visitedAuthors);
+                componentAuthors.addAll(frontier);
+            }
+            components.add(new Component(componentAuthors.map(authors), componentBooks.map(books)));
+        }
+        for (int b = nextClear(visitedBooks, 0, books.length); b < books.length;
+             b = nextClear(visitedBooks, b + 1, books.length)) {
+            components.add(new Component(Collections.emptyList(), List.of(books[b])));
+        }
+        components.sort((x, y) -> Integer.compare(y.getAuthors().size() + y.getBooks().size(),
+                x.getAuthors().size() + x.getBooks().size()));
+        return components;
+    }
+
+    private IntList toBooks(IntList authorFrontier, long[] visitedBooks) {
+        return expand(authorFrontier, authorBookOffsets, authorBookTargets,
+                bookAuthorOffsets, bookAuthorTargets, visitedBooks, books.length);
+    }
+
+    private IntList toAuthors(IntList bookFrontier, long[] visitedAuthors) {
+        return expand(bookFrontier, bookAuthorOffsets, bookAuthorTargets,
+                authorBookOffsets, authorBookTargets, visitedAuthors, authors.length);
+    }
+
+    /**
+     * Returns the unvisited targets adjacent to the frontier and marks them as visited.
+     *
+     * @param frontier       the source vertices to expand
+     * @param forwardOffsets source → target adjacency offsets
+     * @param forwardTargets source → target adjacency targets
+     * @param reverseOffsets target → source adjacency offsets
+     * @param reverseTargets target → source adjacency targets
+     * @param visited        the visited targets, updated in place
+     * @param targetCount    the number of target vertices
+     * @return the newly reached targets
+     */
+    private static IntList expand(IntList frontier, int[] forwardOffsets, int[] forwardTargets,
+                                  int[] reverseOffsets, int[] reverseTargets, long[] visited, int targetCount) {
+        int sourceCount = forwardOffsets.length - 1;
+        if ((long) frontier.size * TOP_DOWN_RATIO < sourceCount) {
+            IntList next = new IntList();
+            for (int f = 0; f < frontier.size; f++) {
+                int s = frontier.values[f];
+                for (int i = forwardOffsets[s]; i < forwardOffsets[s + 1]; i++) {
+                    int t = forwardTargets[i];
+                    if (!get(visited, t)) {
+                        set(visited, t);
+                        next.add(t);
+                    }
+                }
+            }
+            return next;
+        }
+        long[] frontierBits = new long[words(sourceCount)];
+        for (int f = 0; f < frontier.size; f++) {
+            set(frontierBits, frontier.values[f]);
+        }
+        long[] next = new long[words(targetCount)];
+        IntStream wordIndexes = IntStream.range(0, next.length);
+        if (targetCount >= PARALLEL_THRESHOLD) {
+            wordIndexes = wordIndexes.parallel();
+        }
+        wordIndexes.forEach(w -> {
+            long reached = 0;
+            long unvisited = ~visited[w];
+            while (unvisited != 0) {
+                int bit = Long.numberOfTrailingZeros(unvisited);
+                unvisited &= unvisited - 1;
+                int t = (w << 6) + bit;
+                if (t >= targetCount) {
+                    break;
+                }
+                for (int i = reverseOffsets[t]; i < reverseOffsets[t + 1]; i++) {
+                    if (get(frontierBits, reverseTargets[i])) {
+                        reached |= 1L << bit;
+                        break;
+                    }
+                }
+            }
+            next[w] = reached;
+            visited[w] |= reached;
+        });
+        IntList result = new IntList();
+        for (int t = nextSet(next, 0); t >= 0; t = nextSet(next, t + 1)) {
+            result.add(t);
+        }
+        return result;
+    }
+
+    /**
+     * A growable list of primitive ints, used for sparse frontiers.
+     */
+    private static class IntList {
+        private int[] values = new int[8];
+        private int size;
+
+        static IntList of(int value) {
+            IntList list = new IntList();
+            list.add(value);
+            return list;
+        }
+
+        void add(int value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = value;
+        }
+
+        void addAll(IntList other) {
+            if (size + other.size > values.length) {
+                values = Arrays.copyOf(values, Math.max(size + other.size, size * 2));
+            }
+            System.arraycopy(other.values, 0, values, size, other.size);
+            size += other.size;
+        }
+
+        void sort() {
+            Arrays.sort(values, 0, size);
+        }
+
+        <T> List<T> map(T[] items) {
+            List<T> result = new ArrayList<>(size);
+            for (int i = 0; i < size; i++) {
+                result.add(items[values[i]]);
+            }
+            return result;
+        }
+    }
+
+    ////////// Bitset helpers //////////
+
+    private static int words(int bits) {
+        return (bits + 63) >>> 6;
+    }
+
+    private static boolean get(long[] bits, int i) {
+        return (bits[i >>> 6] & (1L << i)) != 0;
+    }
+
+    private static void set(long[] bits, int i) {
+        bits[i >>> 6] |= 1L << i;
+    }
+
+    private static int nextSet(long[] bits, int from) {
+        int w = from >>> 6;
+        if (w >= bits.length) {
+            return -1;
+        }
+        long word = bits[w] & (-1L << from);
+        while (true) {
+            if (word != 0) {
+                return (w << 6) + Long.numberOfTrailingZeros(word);
+            }
+            if (++w == bits.length) {
+                return -1;
+            }
+            word = bits[w];
+        }
+    }
+
+    private static int nextClear(long[] bits, int from, int size) {
+        int w = from >>> 6;
+        if (w >= bits.length) {
+            return size;
+        }
+        long word = ~bits[w] & (-1L << from);
+        while (true) {
+            if (word != 0) {
+                return Math.min(size, (w << 6) + Long.numberOfTrailingZeros(word));
+            }
+            if (++w == bits.length) {
+                return size;
+            }
+            word = ~bits[w];
+        }
+    }
+}
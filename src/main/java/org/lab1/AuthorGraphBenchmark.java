@@ -0,0 +1,160 @@
+package org.lab1;
+
+import java.util.*;
+
+/**
+ * Measures {@link AuthorGraph} on a synthetic catalog with millions of author–book edges, and
+ * checks its k-hop answers against a plain breadth-first search over the object graph.
+ * <p>
+ * The benchmark creates the authors and titles in memory only; no database is needed. Every
+ * title gets one to {@link #MAX_AUTHORS_PER_TITLE} authors chosen at random, which links almost
+ * all authors into one large component, the worst case for reachability and component queries.
+ * Each query is run {@link #ROUNDS} times from different authors after an untimed warm-up
+ * round, and the best and worst times are printed.
+ * </p>
+ * <p>
+ * Usage: {@code java -Xmx3g -cp target/classes org.lab1.AuthorGraphBenchmark [authors] [titles]}
+ * (defaults 600000 and 1200000, about 2.4 million edges).
+ * </p>
+ */
+public class AuthorGraphBenchmark {
+    private static final int MAX_AUTHORS_PER_TITLE = 3;
+    private static final int ROUNDS = 5;
+    private static final int CHECKED_HOPS = 2;
+
+    /**
+     * Runs the benchmark and prints the results.
+     *
+     * @param args optional numbers of authors and titles
+     */
+    public static void main(String[] args) {
+        int authorCount = args.length > 0 ? Integer.parseInt(args[0]) : 600_000;
+        int titleCount = args.length > 1 ? Integer.parseInt(args[1]) : 1_200_000;
+
+        List<Author> authors = new ArrayList<>(authorCount);
+        List<Book> books = new ArrayList<>(titleCount);
+        fill(authors, authorCount, books, titleCount);
+
+        long start = System.nanoTime();
+        AuthorGraph graph = AuthorGraph.build(authors, books);
+        System.out.printf("%d authors, %d titles, %d edges; graph built in %d ms%n",
+                authorCount, titleCount, graph.getEdgeCount(), (System.nanoTime() - start) / 1_000_000);
+
+        Random random = new Random(11);
+        for (int round = 0; round < ROUNDS; round++) {
+            Author author = authors.get(random.nextInt(authorCount));
+            Set<Author> expected = naiveWithinHops(author, CHECKED_HOPS);
+            if (!expected.equals(new HashSet<>(graph.authorsWithinHops(author, CHECKED_HOPS)))) {
+                throw new IllegalStateException("authorsWithinHops disagrees with a plain search from author "
+                        + author.getAuthorID());
+            }
+        }
+        System.out.printf("%d-hop results match a plain search for %d authors%n", CHECKED_HOPS, ROUNDS);
+
+        long[] coBooks = new long[2];
+        long[] threeHops = new long[2];
+        long[] allHops = new long[2];
+        long[] components = new long[2];
+        int reachable = 0;
+        List<AuthorGraph.Component> found = Collections.emptyList();
+        for (int round = -1; round < ROUNDS; round++) {
+            Author author = authors.get(random.nextInt(authorCount));
+            boolean timed = round >= 0;
+
+            start = System.nanoTime();
+            graph.booksByCoAuthors(author);
+            record(coBooks, start, timed);
+
+            start = System.nanoTime();
+            graph.authorsWithinHops(author, 3);
+            record(threeHops, start, timed);
+
+            start = System.nanoTime();
+            reachable = graph.authorsWithinHops(author, Integer.MAX_VALUE).size();
+            record(allHops, start, timed);
+
+            start = System.nanoTime();
+            found = graph.components();
+            record(components, start, timed);
+        }
+        print("books by co-authors", coBooks);
+        print("authors within 3 hops", threeHops);
+        print("all reachable authors", allHops);
+        print("connected components", components);
+        System.out.printf("%d components; the last start reached %d authors; the largest has %d authors%n",
+                found.size(), reachable, found.isEmpty() ? 0 : found.get(0).getAuthors().size());
+    }
+
+    /**
+     * Creates the synthetic authors and titles and links them both ways.
+     */
+    private static void fill(List<Author> authors, int authorCount, List<Book> books, int titleCount) {
+        Random random = new Random(42);
+        for (int i = 1; i <= authorCount; i++) {
+            authors.add(new Author(i, "First" + i % 997, "Last" + i / 997));
+        }
+        for (int i = 0; i < titleCount; i++) {
+            Book book = new Book(Isbn.parse(isbn13(i)), "Title " + i, 1, "2024");
+            int count = 1 + random.nextInt(MAX_AUTHORS_PER_TITLE);
+            for (int j = 0; j < count; j++) {
+                book.addAuthor(authors.get(random.nextInt(authorCount)));
+            }
+            books.add(book);
+        }
+    }
+
+    /**
+     * Returns the authors within the given number of hops, found by walking the authors' and
+     * books' own lists, as the catalog did before {@link AuthorGraph}.
+     */
+    private static Set<Author> naiveWithinHops(Author author, int hops) {
+        Set<Author> seen = new HashSet<>();
+        seen.add(author);
+        List<Author> frontier = List.of(author);
+        for (int hop = 0; hop < hops; hop++) {
+            List<Author> next = new ArrayList<>();
+            for (Author current : frontier) {
+                for (Book book : current.getBookList()) {
+                    for (Author coAuthor : book.getAuthorList()) {
+                        if (seen.add(coAuthor)) {
+                            next.add(coAuthor);
+                        }
+                    }
+                }
+            }
+            frontier = next;
+        }
+        seen.remove(author);
+        return seen;
+    }
+
+    /**
+     * Records the time since {@code start} as a new best ({@code times[0]}) or worst
+     * ({@code times[1]}) if the round is timed.
+     */
+    private static void record(long[] times, long start, boolean timed) {
+        long elapsed = System.nanoTime() - start;
+        if (!timed) {
+            return;
+        }
+        times[0] = times[0] == 0 ? elapsed : Math.min(times[0], elapsed);
+        times[1] = Math.max(times[1], elapsed);
+    }
+
+    private static void print(String query, long[] times) {
+        System.out.printf("  %-24s %8.2f ms best, %8.2f ms worst%n", query + ":", times[0] / 1e6, times[1] / 1e6);
+    }
+
+    /**
+     * Returns the n-th synthetic ISBN-13 with the 979 prefix and a valid check digit.
+     */
+    private static String isbn13(int n) {
+        String body = "979" + String.format("%09d", n);
+        int sum = 0;
+        for (int i = 0; i < 12; i++) {
+            int digit = body.charAt(i) - '0';
+            sum += i % 2 == 0 ? digit : 3 * digit;
+        }
+        return body + (10 - sum % 10) % 10;
+    }
+}
@@ -1,7 +1,9 @@
 package org.lab1;
 
-import java.util.ArrayList;
-import java.util.List;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.Set;
 
 /**
  * Represents a book from the titles table in the books database.
@@ -10,11 +12,12 @@ import java.util.List;
  * </p>
  */
 public class Book {
-    private String isbn;
+    private Isbn isbn;
     private String title;
     private int editionNumber;
     private String copyright;
-    private List<Author> authorList;
+    private int version;
+    private Set<Author> authorList;
 
     /**
      * Constructs a Book object with the given details.
@@ -23,21 +26,43 @@ public class Book {
      * @param title         the title of the book
      * @param editionNumber the edition number of the book
      * @param copyright     the copyright information
+     * @throws IllegalArgumentException if the ISBN is not a valid ISBN-10 or ISBN-13
      */
     public Book(String isbn, String title, int editionNumber, String copyright) {
+        this(Isbn.parse(isbn), title, editionNumber, copyright);
+    }
+
+    /**
+     * Constructs a Book object with an already parsed ISBN.
+     *
+     * @param isbn          the ISBN of the book
+     * @param title         the title of the book
+     * @param editionNumber the edition number of the book
+     * @param copyright     the copyright information
+     */
+    public Book(Isbn isbn, String title, int editionNumber, String copyright) {
         this.isbn = isbn;
         this.title = title;
         this.editionNumber = editionNumber;
         this.copyright = copyright;
-        this.authorList = new ArrayList<>();
+        this.authorList = new LinkedHashSet<>();
     }
 
     /**
-     * Returns the ISBN of the book.
+     * Returns the ISBN of the book as it is stored in the database.
      *
      * @return the isbn
      */
     public String getIsbn() {
+        return isbn.toString();
+    }
+
+    /**
+     * Returns the parsed ISBN of the book, used as its key in lookups.
+     *
+     * @return the isbn key
+     */
+    public Isbn getIsbnKey() {
         return isbn;
     }
 
@@ -45,9 +70,10 @@ public class Book {
      * Sets the ISBN of the book.
      *
      * @param isbn the new ISBN
+     * @throws IllegalArgumentException if the ISBN is not a valid ISBN-10 or ISBN-13
      */
     public void setIsbn(String isbn) {
-        this.isbn = isbn;
+        this.isbn = Isbn.parse(isbn);
     }
 
     /**
@@ -105,12 +131,16 @@ public class Book {
     }
 
     /**
-     * Returns the list of authors associated with the book.
+     * Returns the authors associated with the book, in the order they were added.
+     * <p>
+     * The returned collection is read-only; use {@link #addAuthor(Author)} and
+     * {@link #removeAuthor(Author)} so that both sides of the relationship stay in sync.
+     * </p>
      *
      * @return the authorList
      */
-    public List<Author> getAuthorList() {
-        return authorList;
+    public Collection<Author> getAuthorList() {
+        return Collections.unmodifiableSet(authorList);
     }
 
     /**
@@ -120,14 +150,42 @@ public class Book {
      * @param author the Author to add
      */
     public void addAuthor(Author author) {
-        if (!authorList.contains(author)) {
-            authorList.add(author);
-            if (!author.getBookList().contains(this)) {
-                author.addBook(this);
-            }
+        if (authorList.add(author)) {
+            author.addBook(this);
         }
     }
 
+    /**
+     * Removes an author from this book's list if it is present.
+     * Also removes this book from the author's list to keep both sides of the relationship in sync.
+     *
+     * @param author the Author to remove
+     */
+    public void removeAuthor(Author author) {
+        if (authorList.remove(author)) {
+            author.removeBook(this);
+        }
+    }
+
+    /**
+     * Returns the version of the book as last read from or written to storage. Updates are
+     * only applied if the stored version still matches; see {@link BookDatabaseManager}.
+     *
+     * @return the version
+     */
+    public int getVersion() {
+        return version;
+    }
+
+    /**
+     * Sets the version of the book.
+     *
+     * @param version the new version
+     */
+    public void setVersion(int version) {
+        this.version = version;
+    }
+
     /**
      * Returns a string representation of the book, including the list of authors.
      *
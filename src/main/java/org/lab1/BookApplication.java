@@ -1,7 +1,10 @@
 package org.lab1;
 
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
 import java.util.Scanner;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
  * The main application class that provides a text-based menu for interacting with the book database.
@@ -13,9 +16,17 @@ import java.util.Scanner;
  *   <li>Edit a book's attributes</li>
  *   <li>Edit an author's attributes</li>
  *   <li>Add a book (with existing or new authors)</li>
+ *   <li>Change a book's authors</li>
+ *   <li>Delete books or authors</li>
+ *   <li>Explore co-authorship: books by an author's co-authors, authors within a number of
+ *   hops, and connected groups of authors</li>
  *   <li>Quit the application</li>
  * </ul>
  * </p>
+ * <p>
+ * The catalog loads in the background, so the menu is available immediately. Until loading
+ * finishes, lookups by ISBN or author ID are answered directly from storage.
+ * </p>
  */
 public class BookApplication {
     /**
@@ -25,19 +36,25 @@ public class BookApplication {
      */
     public static void main(String[] args) {
         BookDatabaseManager dbManager = new BookDatabaseManager();
-        dbManager.loadData();
+        dbManager.startWarmup();
 
         Scanner scanner = new Scanner(System.in);
         boolean running = true;
         while (running) {
-            System.out.println("\nPlease select an option:");
+            System.out.println("\n[" + dbManager.getWarmupStatus() + "]");
+            System.out.println("Please select an option:");
             System.out.println("1. Print all books (with authors)");
             System.out.println("2. Print all authors (with books)");
             System.out.println("3. Edit a book's attributes");
             System.out.println("4. Edit an author's attributes");
             System.out.println("5. Add a book");
-            System.out.println("6. Quit");
+            System.out.println("6. Change a book's authors");
+            System.out.println("7. Delete books");
+            System.out.println("8. Delete authors");
+            System.out.println("9. Co-author queries");
+            System.out.println("10. Quit");
             System.out.print("Your choice: ");
+            dbManager.getStartupMetrics().recordFirstResponse();
             String choice = scanner.nextLine();
 
             switch (choice) {
@@ -57,6 +74,18 @@ public class BookApplication {
                     addBook(dbManager, scanner);
                     break;
                 case "6":
+                    editBookAuthors(dbManager, scanner);
+                    break;
+                case "7":
+                    deleteBooks(dbManager, scanner);
+                    break;
+                case "8":
+                    deleteAuthors(dbManager, scanner);
+                    break;
+                case "9":
+                    coAuthorQueries(dbManager, scanner);
+                    break;
+                case "10":
                     running = false;
                     break;
                 default:
@@ -64,6 +93,8 @@ public class BookApplication {
             }
         }
         scanner.close();
+        dbManager.close();
+        System.out.println("Startup metrics: " + dbManager.getStartupMetrics());
         System.out.println("Exiting application.");
     }
 
@@ -73,7 +104,11 @@ public class BookApplication {
      * @param dbManager the BookDatabaseManager managing the data
      */
     private static void printAllBooks(BookDatabaseManager dbManager) {
-        List<Book> books = dbManager.getBooks();
+        if (!dbManager.isReady()) {
+            System.out.println(dbManager.getWarmupStatus() + ". Please try again shortly.");
+            return;
+        }
+        Collection<Book> books = dbManager.getBooks();
         if (books.isEmpty()) {
             System.out.println("No books found.");
         } else {
@@ -90,7 +125,11 @@ public class BookApplication {
      * @param dbManager the BookDatabaseManager managing the data
      */
     private static void printAllAuthors(BookDatabaseManager dbManager) {
-        List<Author> authors = dbManager.getAuthors();
+        if (!dbManager.isReady()) {
+            System.out.println(dbManager.getWarmupStatus() + ". Please try again shortly.");
+            return;
+        }
+        Collection<Author> authors = dbManager.getAuthors();
         if (authors.isEmpty()) {
             System.out.println("No authors found.");
         } else {
@@ -136,8 +175,26 @@ public class BookApplication {
         if (!newCopyright.trim().isEmpty()) {
             book.setCopyright(newCopyright);
         }
-        if (dbManager.updateBook(book)) {
+        AtomicBoolean keptCurrent = new AtomicBoolean();
+        boolean updated = dbManager.updateBook(book, (attempted, current) -> {
+            System.out.println("This book was changed by another user while you were editing it.");
+            System.out.println("Current: " + current.getTitle() + ", edition " + current.getEditionNumber()
+                    + ", " + current.getCopyright());
+            System.out.println("Yours:   " + attempted.getTitle() + ", edition " + attempted.getEditionNumber()
+                    + ", " + attempted.getCopyright());
+            if (!confirmOverwrite(scanner)) {
+                keptCurrent.set(true);
+                return null;
+            }
+            current.setTitle(attempted.getTitle());
+            current.setEditionNumber(attempted.getEditionNumber());
+            current.setCopyright(attempted.getCopyright());
+            return current;
+        });
+        if (updated) {
             System.out.println("Book updated successfully.");
+        } else if (keptCurrent.get()) {
+            System.out.println("Kept the other user's changes.");
         } else {
             System.out.println("Error updating book.");
         }
@@ -175,13 +232,39 @@ public class BookApplication {
         if (!newLastName.trim().isEmpty()) {
             author.setLastName(newLastName);
         }
-        if (dbManager.updateAuthor(author)) {
+        AtomicBoolean keptCurrent = new AtomicBoolean();
+        boolean updated = dbManager.updateAuthor(author, (attempted, current) -> {
+            System.out.println("This author was changed by another user while you were editing it.");
+            System.out.println("Current: " + current.getFirstName() + " " + current.getLastName());
+            System.out.println("Yours:   " + attempted.getFirstName() + " " + attempted.getLastName());
+            if (!confirmOverwrite(scanner)) {
+                keptCurrent.set(true);
+                return null;
+            }
+            current.setFirstName(attempted.getFirstName());
+            current.setLastName(attempted.getLastName());
+            return current;
+        });
+        if (updated) {
             System.out.println("Author updated successfully.");
+        } else if (keptCurrent.get()) {
+            System.out.println("Kept the other user's changes.");
         } else {
             System.out.println("Error updating author.");
         }
     }
 
+    /**
+     * Asks whether to overwrite another user's changes after an update conflict.
+     *
+     * @param scanner the Scanner for user input
+     * @return true to write the user's values over the current ones; false to keep the current ones
+     */
+    private static boolean confirmOverwrite(Scanner scanner) {
+        System.out.print("Overwrite with your changes? (y/n): ");
+        return scanner.nextLine().trim().equalsIgnoreCase("y");
+    }
+
     /**
      * Provides a prompt to add a new book (with existing or new authors) to the database.
      *
@@ -191,6 +274,10 @@ public class BookApplication {
     private static void addBook(BookDatabaseManager dbManager, Scanner scanner) {
         System.out.print("Enter ISBN: ");
         String isbn = scanner.nextLine();
+        if (Isbn.tryParse(isbn) == null) {
+            System.out.println("Invalid ISBN. Enter a valid ISBN-10 or ISBN-13.");
+            return;
+        }
         if (dbManager.getBookByISBN(isbn) != null) {
             System.out.println("A book with this ISBN already exists.");
             return;
@@ -261,5 +348,214 @@ public class BookApplication {
             System.out.println("Error adding book.");
         }
     }
-}
 
+    /**
+     * Provides a prompt to replace a book's authors with a list of author IDs.
+     *
+     * @param dbManager the BookDatabaseManager managing the data
+     * @param scanner   the Scanner for user input
+     */
+    private static void editBookAuthors(BookDatabaseManager dbManager, Scanner scanner) {
+        System.out.print("Enter the ISBN of the book: ");
+        Book book = dbManager.getBookByISBN(scanner.nextLine());
+        if (book == null) {
+            System.out.println("Book not found.");
+            return;
+        }
+        System.out.println(book);
+        System.out.print("Enter the new author IDs, separated by commas: ");
+        List<Author> newAuthors = new ArrayList<>();
+        for (String idInput : scanner.nextLine().split(",")) {
+            if (idInput.trim().isEmpty()) {
+                continue;
+            }
+            try {
+                Author author = dbManager.getAuthorByID(Integer.parseInt(idInput.trim()));
+                if (author == null) {
+                    System.out.println("Author not found: " + idInput.trim());
+                    return;
+                }
+                newAuthors.add(author);
+            } catch (NumberFormatException e) {
+                System.out.println("Invalid author ID: " + idInput.trim());
+                return;
+            }
+        }
+        if (dbManager.setAuthors(book, newAuthors)) {
+            System.out.println("Authors updated successfully.");
+        } else {
+            System.out.println("Error updating authors.");
+        }
+    }
+
+    /**
+     * Provides a prompt to delete one or more books by ISBN.
+     *
+     * @param dbManager the BookDatabaseManager managing the data
+     * @param scanner   the Scanner for user input
+     */
+    private static void deleteBooks(BookDatabaseManager dbManager, Scanner scanner) {
+        System.out.print("Enter the ISBNs of the books to delete, separated by commas: ");
+        List<Book> toDelete = new ArrayList<>();
+        for (String isbn : scanner.nextLine().split(",")) {
+            if (isbn.trim().isEmpty()) {
+                continue;
+            }
+            Book book = dbManager.getBookByISBN(isbn.trim());
+            if (book == null) {
+                System.out.println("Book not found: " + isbn.trim());
+                return;
+            }
+            toDelete.add(book);
+        }
+        int deleted = dbManager.deleteBooks(toDelete);
+        if (deleted >= 0) {
+            System.out.println(deleted + " book(s) deleted.");
+        } else {
+            System.out.println("Error deleting books.");
+        }
+    }
+
+    /**
+     * Provides a prompt to delete one or more authors by ID.
+     *
+     * @param dbManager the BookDatabaseManager managing the data
+     * @param scanner   the Scanner for user input
+     */
+    private static void deleteAuthors(BookDatabaseManager dbManager, Scanner scanner) {
+        System.out.print("Enter the IDs of the authors to delete, separated by commas: ");
+        List<Author> toDelete = new ArrayList<>();
+        for (String idInput : scanner.nextLine().split(",")) {
+            if (idInput.trim().isEmpty()) {
+                continue;
+            }
+            try {
+                Author author = dbManager.getAuthorByID(Integer.parseInt(idInput.trim()));
+                if (author == null) {
+                    System.out.println("Author not found: " + idInput.trim());
+                    return;
+                }
+                toDelete.add(author);
+            } catch (NumberFormatException e) {
+                System.out.println("Invalid author ID: " + idInput.trim());
+                return;
+            }
+        }
+        int deleted = dbManager.deleteAuthors(toDelete);
+        if (deleted >= 0) {
+            System.out.println(deleted + " author(s) deleted.");
+        } else {
+            System.out.println("Error deleting authors.");
+        }
+    }
+
+    /**
+     * Provides a menu of co-authorship queries over the catalog graph, printing how long each
+     * query took.
+     *
+     * @param dbManager the BookDatabaseManager managing the data
+     * @param scanner   the Scanner for user input
+     */
+    private static void coAuthorQueries(BookDatabaseManager dbManager, Scanner scanner) {
+        if (!dbManager.isReady()) {
+            System.out.println("Waiting for the catalog to finish loading...");
+        }
+        long start = System.nanoTime();
+        AuthorGraph graph = dbManager.getAuthorGraph();
+        if (graph == null) {
+            System.out.println("The catalog could not be loaded.");
+            return;
+        }
+        System.out.println("Graph ready: " + dbManager.getAuthors().size() + " authors, "
+                + dbManager.getBooks().size() + " books, " + graph.getEdgeCount() + " links ("
+                + elapsedMillis(start) + " ms)");
+        System.out.println("1. Books written by an author's co-authors");
+        System.out.println("2. Authors within a number of hops");
+        System.out.println("3. Connected groups of authors");
+        System.out.print("Your choice: ");
+        String choice = scanner.nextLine();
+
+        switch (choice) {
+            case "1": {
+                Author author = promptAuthor(dbManager, scanner);
+                if (author == null) {
+                    return;
+                }
+                start = System.nanoTime();
+                List<Book> result = graph.booksByCoAuthors(author);
+                long millis = elapsedMillis(start);
+                for (Book book : result) {
+                    System.out.println(book.getIsbn() + " " + book.getTitle());
+                }
+                System.out.println(result.size() + " book(s) found in " + millis + " ms.");
+                break;
+            }
+            case "2": {
+                Author author = promptAuthor(dbManager, scanner);
+                if (author == null) {
+                    return;
+                }
+                System.out.print("Enter the number of hops: ");
+                int hops;
+                try {
+                    hops = Integer.parseInt(scanner.nextLine().trim());
+                } catch (NumberFormatException e) {
+                    System.out.println("Invalid number of hops.");
+                    return;
+                }
+                start = System.nanoTime();
+                List<Author> result = graph.authorsWithinHops(author, hops);
+                long millis = elapsedMillis(start);
+                for (Author found : result) {
+                    System.out.println(found.getAuthorID() + " " + found.getFirstName() + " "
+                            + found.getLastName());
+                }
+                System.out.println(result.size() + " author(s) found in " + millis + " ms.");
+                break;
+            }
+            case "3": {
+                start = System.nanoTime();
+                List<AuthorGraph.Component> components = graph.components();
+                long millis = elapsedMillis(start);
+                int shown = 0;
+                for (AuthorGraph.Component component : components) {
+                    if (shown++ == 10) {
+                        System.out.println("...");
+                        break;
+                    }
+                    System.out.println(component.getAuthors().size() + " author(s), "
+                            + component.getBooks().size() + " book(s)");
+                }
+                System.out.println(components.size() + " group(s) found in " + millis + " ms.");
+                break;
+            }
+            default:
+                System.out.println("Invalid choice.");
+        }
+    }
+
+    /**
+     * Prompts for an author ID and looks the author up.
+     *
+     * @param dbManager the BookDatabaseManager managing the data
+     * @param scanner   the Scanner for user input
+     * @return the Author, or null if the input was invalid or no such author exists
+     */
+    private static Author promptAuthor(BookDatabaseManager dbManager, Scanner scanner) {
+        System.out.print("Enter the author ID: ");
+        try {
+            Author author = dbManager.getAuthorByID(Integer.parseInt(scanner.nextLine().trim()));
+            if (author == null) {
+                System.out.println("Author not found.");
+            }
+            return author;
+        } catch (NumberFormatException e) {
+            System.out.println("Invalid author ID.");
+            return null;
+        }
+    }
+
+    private static long elapsedMillis(long startNanos) {
+        return (System.nanoTime() - startNanos) / 1_000_000;
+    }
+}
@@ -1,14 +1,37 @@
 package org.lab1;
 
-import java.sql.*;
+import java.nio.file.Paths;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
- * Manages the connection to the database and performs CRUD operations on the books and authors.
+ * Manages the catalog storage and performs CRUD operations on the books and authors.
  * <p>
- * This class loads books and authors from the database, manages their relationships,
- * and provides methods to add, update, or delete books and authors.
+ * This class loads books and authors from a {@link CatalogStorage} backend, manages their
+ * relationships, and provides methods to add, update, or delete books and authors.
+ * </p>
+ * <p>
+ * Loading can run in the background with {@link #startWarmup()}. Until it finishes,
+ * {@link #getBookByISBN(Isbn)} and {@link #getAuthorByID(int)} are answered with point queries
+ * against the backend and return detached objects without relationships, while methods that
+ * change the catalog wait for loading to finish.
+ * </p>
+ * <p>
+ * Updates use optimistic locking, so several application instances can edit the same catalog
+ * without locks. Each Book and Author carries the version it was read at, and an update is
+ * rejected if another instance has written the row since. The in-memory copy is then
+ * refreshed from storage and a {@link ConflictResolver} can decide whether to retry.
  * </p>
  */
 public class BookDatabaseManager {
@@ -16,131 +39,328 @@ public class BookDatabaseManager {
     private static final String DB_URL = "jdbc:mariadb://localhost:3306/books";
     private static final String USER = "root";
     private static final String PASSWORD = "1qaz2w"; // or your DB password
+    private static final int MAX_UPDATE_ATTEMPTS = 5;
 
-    private Connection conn;
-    private List<Book> books;
-    private List<Author> authors;
+    /**
+     * Decides what to do when an update is rejected because another writer changed the same
+     * row first.
+     *
+     * @param <T> the type of object being updated
+     */
+    public interface ConflictResolver<T> {
+        /**
+         * Resolves a conflicting update.
+         *
+         * @param attempted the values the caller tried to write, with the stale version
+         * @param current   a fresh copy of the stored values, with the current version
+         * @return the object to write instead, which must carry the current version (normally
+         * {@code current} with the caller's changes merged in), or null to give up
+         */
+        T resolve(T attempted, T current);
+    }
+
+    private CatalogStorage storage;
+    private Set<Book> books;
+    private Map<Integer, Author> authors;
+    private IsbnIndex<Book> booksByIsbn;
+    private volatile AuthorGraph authorGraph;
+
+    private final StartupMetrics metrics = new StartupMetrics();
+    private final AtomicBoolean warmupStarted = new AtomicBoolean();
+    private final CompletableFuture<Void> connected = new CompletableFuture<>();
+    private final CompletableFuture<Void> warmup = new CompletableFuture<>();
+    private volatile boolean ready;
+    private final AtomicInteger loadedBooks = new AtomicInteger();
+    private final AtomicInteger loadedAuthors = new AtomicInteger();
+    private final AtomicInteger loadedLinks = new AtomicInteger();
 
     /**
-     * Constructs a BookDatabaseManager object and initializes the connection.
+     * Constructs a BookDatabaseManager object. The connection is opened by {@link #loadData()}
+     * or {@link #startWarmup()}.
+     * <p>
+     * The backend is chosen with the {@code books.storage} system property: {@code jdbc}
+     * (the default) uses MariaDB, and {@code log} uses the embedded log in the directory
+     * named by {@code books.storage.dir}.
+     * </p>
      */
     public BookDatabaseManager() {
-        books = new ArrayList<>();
-        authors = new ArrayList<>();
-        try {
-            connect();
-        } catch (SQLException e) {
-            e.printStackTrace();
-        }
+        this(createStorage());
     }
 
     /**
-     * Establishes a connection to the database.
+     * Constructs a BookDatabaseManager object on the given backend. The backend is opened by
+     * {@link #loadData()} or {@link #startWarmup()}.
      *
-     * @throws SQLException if a database access error occurs
+     * @param storage the backend to load from and write to
      */
-    public void connect() throws SQLException {
-        conn = DriverManager.getConnection(DB_URL, USER, PASSWORD);
+    public BookDatabaseManager(CatalogStorage storage) {
+        this.storage = storage;
+        books = new LinkedHashSet<>();
+        authors = new LinkedHashMap<>();
+        booksByIsbn = new IsbnIndex<>();
     }
 
     /**
-     * Loads all books, authors, and their relationships from the database.
+     * Creates the backend selected by the {@code books.storage} system property. Also used by
+     * {@link CatalogStorageCheck}, so that it checks the backend the application would use.
+     *
+     * @return the storage backend
      */
-    public void loadData() {
-        loadBooks();
-        loadAuthors();
-        loadRelationships();
+    static CatalogStorage createStorage() {
+        String type = System.getProperty("books.storage", "jdbc");
+        if (type.equalsIgnoreCase("log")) {
+            return new LogCatalogStorage(Paths.get(System.getProperty("books.storage.dir", "catalog-data")));
+        }
+        return new JdbcCatalogStorage(DataSourceRouter.fromSystemProperties(DB_URL, USER, PASSWORD));
     }
 
     /**
-     * Loads all books from the 'titles' table.
+     * Starts loading if necessary and waits until the storage backend is open.
+     * <p>
+     * For the JDBC backend this connects to the primary database and checks any configured
+     * replicas, taken from the {@code books.db.*} system properties and falling back to the
+     * constants above; see {@link DataSourceRouter}.
+     * </p>
+     *
+     * @throws StorageException if the backend cannot be opened
      */
-    private void loadBooks() {
-        String sql = "SELECT * FROM titles";
-        try (PreparedStatement ps = conn.prepareStatement(sql);
-             ResultSet rs = ps.executeQuery()) {
-            while (rs.next()) {
-                String isbn = rs.getString("isbn");
-                String title = rs.getString("title");
-                int editionNumber = rs.getInt("editionNumber");
-                String copyright = rs.getString("copyright");
-                Book book = new Book(isbn, title, editionNumber, copyright);
-                books.add(book);
+    public void connect() throws StorageException {
+        startWarmup();
+        try {
+            connected.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof StorageException) {
+                throw (StorageException) e.getCause();
             }
-        } catch (SQLException e) {
-            e.printStackTrace();
+            throw new StorageException("Could not open the catalog storage", e.getCause());
+        } catch (CancellationException e) {
+            throw new StorageException("Could not open the catalog storage", e);
         }
     }
 
     /**
-     * Loads all authors from the 'authors' table.
+     * Opens the storage backend. Only called by {@link #warmUp()}, which runs once, so the
+     * backend is never opened twice.
+     *
+     * @throws StorageException if the backend cannot be opened
      */
-    private void loadAuthors() {
-        String sql = "SELECT * FROM authors";
-        try (PreparedStatement ps = conn.prepareStatement(sql);
-             ResultSet rs = ps.executeQuery()) {
-            while (rs.next()) {
-                int authorID = rs.getInt("authorID");
-                String firstName = rs.getString("firstName");
-                String lastName = rs.getString("lastName");
-                Author author = new Author(authorID, firstName, lastName);
-                authors.add(author);
-            }
-        } catch (SQLException e) {
-            e.printStackTrace();
+    private void openStorage() throws StorageException {
+        try {
+            storage.open();
+            connected.complete(null);
+        } catch (Throwable e) {
+            // complete on any failure, so that threads waiting for the connection never hang
+            connected.completeExceptionally(e);
+            throw e;
         }
     }
 
     /**
-     * Loads the relationships from the 'authorISBN' table.
+     * Starts loading the catalog on a background thread and returns immediately.
+     * Calling this again while loading is in progress or finished has no effect.
+     *
+     * @return a future that completes when the catalog is fully loaded, or completes
+     * exceptionally if the connection or the load fails
+     */
+    public CompletableFuture<Void> startWarmup() {
+        if (warmupStarted.compareAndSet(false, true)) {
+            Thread loader = new Thread(this::warmUp, "catalog-warmup");
+            loader.setDaemon(true);
+            loader.start();
+        }
+        return warmup;
+    }
+
+    /**
+     * Loads all books, authors, and their relationships from the backend, connecting first if
+     * necessary, and blocks until they are loaded. If loading is already running in the
+     * background, this waits for it instead of starting a second load.
+     */
+    public void loadData() {
+        try {
+            startWarmup().join();
+        } catch (CompletionException | CancellationException e) {
+            // the loader thread has already reported the failure; see getWarmupStatus()
+        }
+    }
+
+    /**
+     * Connects and loads the catalog into new collections, then publishes them all at once so
+     * that other threads never see a partly built catalog.
      * <p>
-     * For each row, finds the corresponding Book and Author and adds the relationship.
+     * Any failure, including an unchecked one from the backend, completes both the connection
+     * and the warm-up futures exceptionally, so that callers waiting on them never hang.
      * </p>
      */
-    private void loadRelationships() {
-        String sql = "SELECT * FROM authorISBN";
-        try (PreparedStatement ps = conn.prepareStatement(sql);
-             ResultSet rs = ps.executeQuery()) {
-            while (rs.next()) {
-                int authorID = rs.getInt("authorID");
-                String isbn = rs.getString("isbn");
-                Book book = getBookByISBN(isbn);
-                Author author = getAuthorByID(authorID);
-                if (book != null && author != null) {
-                    book.addAuthor(author);
+    private void warmUp() {
+        try {
+            openStorage();
+            Set<Book> newBooks = new LinkedHashSet<>();
+            Map<Integer, Author> newAuthors = new LinkedHashMap<>();
+            IsbnIndex<Book> newIndex = new IsbnIndex<>();
+            storage.load(new CatalogStorage.Loader() {
+                @Override
+                public void book(Book book) {
+                    newBooks.add(book);
+                    newIndex.put(book.getIsbnKey(), book);
+                    loadedBooks.incrementAndGet();
                 }
-            }
-        } catch (SQLException e) {
+
+                @Override
+                public void author(Author author) {
+                    newAuthors.put(author.getAuthorID(), author);
+                    loadedAuthors.incrementAndGet();
+                }
+
+                @Override
+                public void link(int authorID, Isbn isbn) {
+                    Book book = newIndex.get(isbn);
+                    Author author = newAuthors.get(authorID);
+                    if (book != null && author != null) {
+                        book.addAuthor(author);
+                        loadedLinks.incrementAndGet();
+                    }
+                }
+            });
+            books = newBooks;
+            authors = newAuthors;
+            booksByIsbn = newIndex;
+            authorGraph = null;
+            ready = true;
+            metrics.recordWarm();
+            warmup.complete(null);
+        } catch (Throwable e) {
             e.printStackTrace();
+            connected.completeExceptionally(e);
+            warmup.completeExceptionally(e);
+        }
+    }
+
+    /**
+     * Returns whether the catalog has been fully loaded.
+     *
+     * @return true once loading has finished successfully
+     */
+    public boolean isReady() {
+        return ready;
+    }
+
+    /**
+     * Starts loading if necessary and waits until the catalog is fully loaded.
+     *
+     * @return true if the catalog is loaded; false if loading failed
+     */
+    public boolean awaitReady() {
+        if (ready) {
+            return true;
         }
+        try {
+            startWarmup().join();
+            return true;
+        } catch (CompletionException | CancellationException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Starts loading if necessary and waits until the backend is connected, so that point
+     * queries can be served before the catalog is fully loaded.
+     *
+     * @return true if the backend is connected; false if connecting failed
+     */
+    private boolean awaitConnected() {
+        startWarmup();
+        try {
+            connected.join();
+            return true;
+        } catch (CompletionException | CancellationException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Returns a one-line description of the loading progress.
+     *
+     * @return the loading status
+     */
+    public String getWarmupStatus() {
+        if (ready) {
+            return "Catalog ready: " + books.size() + " books, " + authors.size() + " authors (warm in "
+                    + metrics.getTimeToFullyWarmMillis() + " ms)";
+        }
+        if (warmup.isCompletedExceptionally()) {
+            return "Catalog failed to load; lookups are answered from storage where possible";
+        }
+        if (!warmupStarted.get()) {
+            return "Catalog not loaded";
+        }
+        return "Loading catalog: " + loadedBooks.get() + " books, " + loadedAuthors.get() + " authors, "
+                + loadedLinks.get() + " links so far";
+    }
+
+    /**
+     * Returns the startup metrics for this manager.
+     *
+     * @return the time-to-first-response and time-to-fully-warm metrics
+     */
+    public StartupMetrics getStartupMetrics() {
+        return metrics;
     }
 
     /**
      * Finds and returns a Book by its ISBN.
+     * <p>
+     * The ISBN may be given in ISBN-10 or ISBN-13 form, with or without hyphens.
+     * </p>
      *
      * @param isbn the ISBN to search for
-     * @return the Book if found; otherwise, null
+     * @return the Book if found; otherwise, null (including when the ISBN is not valid)
      */
     public Book getBookByISBN(String isbn) {
-        for (Book b : books) {
-            if (b.getIsbn().equals(isbn)) {
-                return b;
-            }
+        Isbn key = Isbn.tryParse(isbn);
+        return key == null ? null : getBookByISBN(key);
+    }
+
+    /**
+     * Finds and returns a Book by its parsed ISBN.
+     * <p>
+     * Before the catalog is loaded this runs a point query instead, and the returned Book is a
+     * detached copy without authors.
+     * </p>
+     *
+     * @param isbn the ISBN to search for
+     * @return the Book if found; otherwise, null
+     */
+    public Book getBookByISBN(Isbn isbn) {
+        if (ready) {
+            return booksByIsbn.get(isbn);
+        }
+        try {
+            return awaitConnected() ? storage.fetchBook(isbn) : null;
+        } catch (StorageException e) {
+            e.printStackTrace();
         }
         return null;
     }
 
     /**
      * Finds and returns an Author by its authorID.
+     * <p>
+     * Before the catalog is loaded this runs a point query instead, and the returned Author is
+     * a detached copy without books.
+     * </p>
      *
      * @param authorID the authorID to search for
      * @return the Author if found; otherwise, null
      */
     public Author getAuthorByID(int authorID) {
-        for (Author a : authors) {
-            if (a.getAuthorID() == authorID) {
-                return a;
-            }
+        if (ready) {
+            return authors.get(authorID);
+        }
+        try {
+            return awaitConnected() ? storage.fetchAuthor(authorID) : null;
+        } catch (StorageException e) {
+            e.printStackTrace();
         }
         return null;
     }
@@ -149,47 +369,38 @@ public class BookDatabaseManager {
 
     /**
      * Inserts a new Book into the database (and its relationships) and adds it to the books list.
+     * <p>
+     * Waits for the catalog to finish loading. Authors looked up before then are replaced by
+     * their loaded instances so that relationships are kept between loaded objects. A book
+     * whose ISBN is already in the catalog, in either its ISBN-10 or ISBN-13 form, is rejected.
+     * </p>
      *
      * @param book the Book to add
      * @return true if the insertion was successful; false otherwise
      */
     public boolean addBook(Book book) {
-        String sql = "INSERT INTO titles (isbn, title, editionNumber, copyright) VALUES (?, ?, ?, ?)";
-        try (PreparedStatement ps = conn.prepareStatement(sql)) {
-            ps.setString(1, book.getIsbn());
-            ps.setString(2, book.getTitle());
-            ps.setInt(3, book.getEditionNumber());
-            ps.setString(4, book.getCopyright());
-            int rowsAffected = ps.executeUpdate();
-            if (rowsAffected > 0) {
+        if (!awaitReady()) {
+            return false;
+        }
+        if (booksByIsbn.get(book.getIsbnKey()) != null) {
+            System.err.println("A book with ISBN " + book.getIsbn() + " already exists");
+            return false;
+        }
+        for (Author author : new ArrayList<>(book.getAuthorList())) {
+            Author managed = authors.get(author.getAuthorID());
+            if (managed != null && managed != author) {
+                book.removeAuthor(author);
+                book.addAuthor(managed);
+            }
+        }
+        try {
+            if (storage.insertBook(book)) {
                 books.add(book);
-                // Insert relationships for each author
-                for (Author author : book.getAuthorList()) {
-                    addAuthorISBNRelation(author, book);
-                }
+                booksByIsbn.put(book.getIsbnKey(), book);
+                authorGraph = null;
                 return true;
             }
-        } catch (SQLException e) {
-            e.printStackTrace();
-        }
-        return false;
-    }
-
-    /**
-     * Inserts a row in the authorISBN table to create a relationship between an author and a book.
-     *
-     * @param author the Author
-     * @param book   the Book
-     * @return true if the insertion was successful; false otherwise
-     */
-    private boolean addAuthorISBNRelation(Author author, Book book) {
-        String sql = "INSERT INTO authorISBN (authorID, isbn) VALUES (?, ?)";
-        try (PreparedStatement ps = conn.prepareStatement(sql)) {
-            ps.setInt(1, author.getAuthorID());
-            ps.setString(2, book.getIsbn());
-            int rowsAffected = ps.executeUpdate();
-            return rowsAffected > 0;
-        } catch (SQLException e) {
+        } catch (StorageException e) {
             e.printStackTrace();
         }
         return false;
@@ -202,83 +413,367 @@ public class BookDatabaseManager {
      * @return true if the insertion was successful; false otherwise
      */
     public boolean addAuthor(Author author) {
-        String sql = "INSERT INTO authors (firstName, lastName) VALUES (?, ?)";
-        try (PreparedStatement ps = conn.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
-            ps.setString(1, author.getFirstName());
-            ps.setString(2, author.getLastName());
-            int rowsAffected = ps.executeUpdate();
-            if (rowsAffected > 0) {
-                try (ResultSet generatedKeys = ps.getGeneratedKeys()) {
-                    if (generatedKeys.next()) {
-                        author.setAuthorID(generatedKeys.getInt(1));
-                    }
-                }
-                authors.add(author);
+        if (!awaitReady()) {
+            return false;
+        }
+        try {
+            if (storage.insertAuthor(author)) {
+                authors.put(author.getAuthorID(), author);
+                authorGraph = null;
                 return true;
             }
-        } catch (SQLException e) {
+        } catch (StorageException e) {
             e.printStackTrace();
         }
         return false;
     }
 
     /**
-     * Updates an existing Book’s attributes in the database.
+     * Updates an existing Book’s attributes in the database, giving up if another user has
+     * changed the book since it was read; see {@link #updateBook(Book, ConflictResolver)}.
      *
      * @param book the Book to update
      * @return true if the update was successful; false otherwise
      */
     public boolean updateBook(Book book) {
-        String sql = "UPDATE titles SET title = ?, editionNumber = ?, copyright = ? WHERE isbn = ?";
-        try (PreparedStatement ps = conn.prepareStatement(sql)) {
-            ps.setString(1, book.getTitle());
-            ps.setInt(2, book.getEditionNumber());
-            ps.setString(3, book.getCopyright());
-            ps.setString(4, book.getIsbn());
-            int rowsAffected = ps.executeUpdate();
-            // relationships are assumed to be maintained by the application
-            return rowsAffected > 0;
-        } catch (SQLException e) {
+        return updateBook(book, null);
+    }
+
+    /**
+     * Updates an existing Book’s attributes in the database if it has not been changed by
+     * another user since it was read.
+     * <p>
+     * Waits for the catalog to finish loading. If the Book is a detached copy from a lookup made
+     * before then, the loaded instance is updated to match.
+     * </p>
+     * <p>
+     * On a conflict, the loaded instance and the given Book are refreshed from storage and the
+     * resolver is asked for the values to write instead. This repeats until the write succeeds,
+     * the resolver gives up, or five attempts have been made.
+     * </p>
+     *
+     * @param book     the Book to update
+     * @param resolver decides how to retry after a conflict, or null to give up on the first one
+     * @return true if the update was successful; false otherwise
+     */
+    public boolean updateBook(Book book, ConflictResolver<Book> resolver) {
+        if (!awaitReady()) {
+            return false;
+        }
+        Book pending = book;
+        try {
+            for (int attempt = 1; ; attempt++) {
+                try {
+                    if (!storage.updateBook(pending)) {
+                        return false;
+                    }
+                    syncBook(pending, book);
+                    return true;
+                } catch (VersionConflictException e) {
+                    Book attempted = copyOf(pending);
+                    Book current = storage.fetchBook(pending.getIsbnKey());
+                    if (current == null) {
+                        return false;
+                    }
+                    syncBook(current, book);
+                    if (resolver == null || attempt == MAX_UPDATE_ATTEMPTS) {
+                        System.err.println(e.getMessage());
+                        return false;
+                    }
+                    pending = resolver.resolve(attempted, current);
+                    if (pending == null) {
+                        return false;
+                    }
+                }
+            }
+        } catch (StorageException e) {
             e.printStackTrace();
         }
         return false;
     }
 
     /**
-     * Updates an existing Author’s attributes in the database.
+     * Copies the attributes and version of a stored book to the loaded instance and to the
+     * caller's copy, where those are different objects.
+     */
+    private void syncBook(Book stored, Book callerCopy) {
+        Book managed = booksByIsbn.get(stored.getIsbnKey());
+        for (Book target : new Book[]{managed, callerCopy}) {
+            if (target != null && target != stored) {
+                target.setTitle(stored.getTitle());
+                target.setEditionNumber(stored.getEditionNumber());
+                target.setCopyright(stored.getCopyright());
+                target.setVersion(stored.getVersion());
+            }
+        }
+    }
+
+    /**
+     * Updates an existing Author’s attributes in the database, giving up if another user has
+     * changed the author since it was read; see {@link #updateAuthor(Author, ConflictResolver)}.
      *
      * @param author the Author to update
      * @return true if the update was successful; false otherwise
      */
     public boolean updateAuthor(Author author) {
-        String sql = "UPDATE authors SET firstName = ?, lastName = ? WHERE authorID = ?";
-        try (PreparedStatement ps = conn.prepareStatement(sql)) {
-            ps.setString(1, author.getFirstName());
-            ps.setString(2, author.getLastName());
-            ps.setInt(3, author.getAuthorID());
-            int rowsAffected = ps.executeUpdate();
-            return rowsAffected > 0;
-        } catch (SQLException e) {
+        return updateAuthor(author, null);
+    }
+
+    /**
+     * Updates an existing Author’s attributes in the database if it has not been changed by
+     * another user since it was read.
+     * <p>
+     * Waits for the catalog to finish loading. If the Author is a detached copy from a lookup
+     * made before then, the loaded instance is updated to match. Conflicts are handled as in
+     * {@link #updateBook(Book, ConflictResolver)}.
+     * </p>
+     *
+     * @param author   the Author to update
+     * @param resolver decides how to retry after a conflict, or null to give up on the first one
+     * @return true if the update was successful; false otherwise
+     */
+    public boolean updateAuthor(Author author, ConflictResolver<Author> resolver) {
+        if (!awaitReady()) {
+            return false;
+        }
+        Author pending = author;
+        try {
+            for (int attempt = 1; ; attempt++) {
+                try {
+                    if (!storage.updateAuthor(pending)) {
+                        return false;
+                    }
+                    syncAuthor(pending, author);
+                    return true;
+                } catch (VersionConflictException e) {
+                    Author attempted = copyOf(pending);
+                    Author current = storage.fetchAuthor(pending.getAuthorID());
+                    if (current == null) {
+                        return false;
+                    }
+                    syncAuthor(current, author);
+                    if (resolver == null || attempt == MAX_UPDATE_ATTEMPTS) {
+                        System.err.println(e.getMessage());
+                        return false;
+                    }
+                    pending = resolver.resolve(attempted, current);
+                    if (pending == null) {
+                        return false;
+                    }
+                }
+            }
+        } catch (StorageException e) {
             e.printStackTrace();
         }
         return false;
     }
 
     /**
-     * Returns the list of all books loaded from the database.
+     * Copies the name and version of a stored author to the loaded instance and to the
+     * caller's copy, where those are different objects.
+     */
+    private void syncAuthor(Author stored, Author callerCopy) {
+        Author managed = authors.get(stored.getAuthorID());
+        for (Author target : new Author[]{managed, callerCopy}) {
+            if (target != null && target != stored) {
+                target.setFirstName(stored.getFirstName());
+                target.setLastName(stored.getLastName());
+                target.setVersion(stored.getVersion());
+            }
+        }
+    }
+
+    /**
+     * Replaces a book's authors with the given ones.
+     * <p>
+     * Only the difference from the book's current authors is written: links that are no longer
+     * wanted are deleted and new ones are inserted, as batches in a single transaction. The
+     * in-memory relationships are then updated link by link.
+     * </p>
+     *
+     * @param book       the Book whose authors to replace
+     * @param newAuthors the complete set of authors the book should have
+     * @return true if the authors were updated; false otherwise
+     */
+    public boolean setAuthors(Book book, Collection<Author> newAuthors) {
+        if (!awaitReady()) {
+            return false;
+        }
+        Book managedBook = booksByIsbn.get(book.getIsbnKey());
+        if (managedBook == null) {
+            System.err.println("No book with ISBN " + book.getIsbn());
+            return false;
+        }
+        book = managedBook;
+        Set<Author> wanted = new LinkedHashSet<>();
+        for (Author author : newAuthors) {
+            Author managed = getAuthorByID(author.getAuthorID());
+            if (managed == null) {
+                System.err.println("No author with ID " + author.getAuthorID());
+                return false;
+            }
+            wanted.add(managed);
+        }
+        List<Author> removed = new ArrayList<>();
+        for (Author author : book.getAuthorList()) {
+            if (!wanted.contains(author)) {
+                removed.add(author);
+            }
+        }
+        List<Author> added = new ArrayList<>();
+        for (Author author : wanted) {
+            if (!book.getAuthorList().contains(author)) {
+                added.add(author);
+            }
+        }
+        if (added.isEmpty() && removed.isEmpty()) {
+            return true;
+        }
+        try {
+            storage.updateLinks(book.getIsbnKey(), authorIDs(added), authorIDs(removed));
+        } catch (StorageException e) {
+            e.printStackTrace();
+            return false;
+        }
+        for (Author author : removed) {
+            book.removeAuthor(author);
+        }
+        for (Author author : added) {
+            book.addAuthor(author);
+        }
+        authorGraph = null;
+        return true;
+    }
+
+    /**
+     * Deletes books and all of their author relationships.
+     *
+     * @param toDelete the Books to delete
+     * @return the number of books deleted, or -1 if the deletion failed
+     */
+    public int deleteBooks(Collection<Book> toDelete) {
+        if (!awaitReady()) {
+            return -1;
+        }
+        List<Isbn> isbns = new ArrayList<>();
+        for (Book book : toDelete) {
+            isbns.add(book.getIsbnKey());
+        }
+        int deleted;
+        try {
+            deleted = storage.deleteBooks(isbns);
+        } catch (StorageException e) {
+            e.printStackTrace();
+            return -1;
+        }
+        for (Book book : toDelete) {
+            Book managed = booksByIsbn.remove(book.getIsbnKey());
+            if (managed != null) {
+                books.remove(managed);
+                for (Author author : new ArrayList<>(managed.getAuthorList())) {
+                    managed.removeAuthor(author);
+                }
+            }
+        }
+        authorGraph = null;
+        return deleted;
+    }
+
+    /**
+     * Deletes authors and all of their book relationships. Their books are kept.
+     *
+     * @param toDelete the Authors to delete
+     * @return the number of authors deleted, or -1 if the deletion failed
+     */
+    public int deleteAuthors(Collection<Author> toDelete) {
+        if (!awaitReady()) {
+            return -1;
+        }
+        int deleted;
+        try {
+            deleted = storage.deleteAuthors(authorIDs(toDelete));
+        } catch (StorageException e) {
+            e.printStackTrace();
+            return -1;
+        }
+        for (Author author : toDelete) {
+            Author managed = authors.remove(author.getAuthorID());
+            if (managed != null) {
+                for (Book book : new ArrayList<>(managed.getBookList())) {
+                    managed.removeBook(book);
+                }
+            }
+        }
+        authorGraph = null;
+        return deleted;
+    }
+
+    /**
+     * Returns a graph of the catalog for co-authorship queries.
+     * <p>
+     * Waits for the catalog to finish loading. The graph is built on first use and kept until
+     * a book or author is added or deleted or a book's authors change, after which the next
+     * call builds a new one. Edits to titles and names do not require a rebuild.
+     * </p>
+     *
+     * @return the graph, or null if the catalog could not be loaded
+     */
+    public AuthorGraph getAuthorGraph() {
+        if (!awaitReady()) {
+            return null;
+        }
+        AuthorGraph graph = authorGraph;
+        if (graph == null) {
+            graph = AuthorGraph.build(authors.values(), books);
+            authorGraph = graph;
+        }
+        return graph;
+    }
+
+    private static Book copyOf(Book book) {
+        Book copy = new Book(book.getIsbnKey(), book.getTitle(), book.getEditionNumber(), book.getCopyright());
+        copy.setVersion(book.getVersion());
+        return copy;
+    }
+
+    private static Author copyOf(Author author) {
+        Author copy = new Author(author.getAuthorID(), author.getFirstName(), author.getLastName());
+        copy.setVersion(author.getVersion());
+        return copy;
+    }
+
+    private static List<Integer> authorIDs(Collection<Author> authors) {
+        List<Integer> ids = new ArrayList<>();
+        for (Author author : authors) {
+            ids.add(author.getAuthorID());
+        }
+        return ids;
+    }
+
+    /**
+     * Closes the storage backend, flushing any pending writes.
+     */
+    public void close() {
+        storage.close();
+    }
+
+    /**
+     * Returns all books loaded from the database, in load order.
+     * This is empty until the catalog has finished loading; see {@link #isReady()}.
      *
-     * @return the list of books
+     * @return a read-only view of the books
      */
-    public List<Book> getBooks() {
-        return books;
+    public Collection<Book> getBooks() {
+        return Collections.unmodifiableSet(books);
     }
 
     /**
-     * Returns the list of all authors loaded from the database.
+     * Returns all authors loaded from the database, in load order.
+     * This is empty until the catalog has finished loading; see {@link #isReady()}.
      *
-     * @return the list of authors
+     * @return a read-only view of the authors
      */
-    public List<Author> getAuthors() {
-        return authors;
+    public Collection<Author> getAuthors() {
+        return Collections.unmodifiableCollection(authors.values());
     }
 }
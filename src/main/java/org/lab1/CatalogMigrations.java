@@ -0,0 +1,63 @@
+package org.lab1;
+
+import java.sql.*;
+import java.util.List;
+
+/**
+ * The schema migrations for the books database, applied by {@link SchemaMigrator} when the
+ * JDBC backend is opened.
+ * <p>
+ * New migrations are appended to {@link #all()} with the next version number; applied
+ * migrations must never be edited or reordered.
+ * </p>
+ */
+public final class CatalogMigrations {
+    private CatalogMigrations() {
+    }
+
+    /**
+     * Returns every migration in version order.
+     *
+     * @return the migrations
+     */
+    public static List<SchemaMigrator.Migration> all() {
+        return List.of(
+                new SchemaMigrator.Migration(1, "Primary key (authorID, isbn) on authorISBN",
+                        CatalogMigrations::addAuthorIsbnPrimaryKey),
+                new SchemaMigrator.Migration(2, "Name lookup index (lastName, firstName) on authors",
+                        conn -> execute(conn, "CREATE INDEX IF NOT EXISTS authors_lastName_firstName "
+                                + "ON authors (lastName, firstName)")),
+                new SchemaMigrator.Migration(3, "Version columns on titles and authors for optimistic locking",
+                        conn -> {
+                            execute(conn, "ALTER TABLE titles ADD COLUMN IF NOT EXISTS version INT NOT NULL DEFAULT 0");
+                            execute(conn, "ALTER TABLE authors ADD COLUMN IF NOT EXISTS version INT NOT NULL DEFAULT 0");
+                        })
+        );
+    }
+
+    /**
+     * Makes (authorID, isbn) the primary key of authorISBN. Duplicate links, which the original
+     * schema allowed, are removed by {@code ALTER IGNORE}. The primary key also serves as the
+     * covering index for author-side lookups. ISBN-side lookups need no extra index: the index
+     * InnoDB created for the foreign key on {@code isbn} carries the primary key columns, so it
+     * already covers (isbn, authorID).
+     */
+    private static void addAuthorIsbnPrimaryKey(Connection conn) throws SQLException {
+        String sql = "SELECT COUNT(*) FROM information_schema.TABLE_CONSTRAINTS "
+                + "WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = 'authorISBN' "
+                + "AND CONSTRAINT_TYPE = 'PRIMARY KEY'";
+        try (PreparedStatement ps = conn.prepareStatement(sql);
+             ResultSet rs = ps.executeQuery()) {
+            if (rs.next() && rs.getInt(1) > 0) {
+                return;
+            }
+        }
+        execute(conn, "ALTER IGNORE TABLE authorISBN ADD PRIMARY KEY (authorID, isbn)");
+    }
+
+    private static void execute(Connection conn, String sql) throws SQLException {
+        try (Statement st = conn.createStatement()) {
+            st.executeUpdate(sql);
+        }
+    }
+}
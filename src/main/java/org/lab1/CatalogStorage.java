@@ -0,0 +1,157 @@
+package org.lab1;
+
+import java.util.Collection;
+
+/**
+ * A storage backend for the titles, authors and author-ISBN links of the catalog.
+ * <p>
+ * {@link BookDatabaseManager} keeps the in-memory object graph and delegates persistence to
+ * an implementation of this interface, so the catalog can run against MariaDB
+ * ({@link JdbcCatalogStorage}) or without a database server ({@link LogCatalogStorage}).
+ * Objects passed in are only read, apart from the generated ID and version numbers written
+ * back to them; objects returned are new and not shared with the backend.
+ * </p>
+ * <p>
+ * Titles and authors carry a version number that starts at 0 and is incremented by every
+ * update. An update only succeeds if the version of the object passed in matches the stored
+ * one, so a writer holding a stale copy cannot overwrite a newer change.
+ * </p>
+ */
+public interface CatalogStorage {
+    /**
+     * Receives the contents of the catalog during {@link #load(Loader)}.
+     * All books are delivered first, then all authors, then all links.
+     */
+    interface Loader {
+        /**
+         * Receives one title.
+         *
+         * @param book the book, without authors
+         */
+        void book(Book book);
+
+        /**
+         * Receives one author.
+         *
+         * @param author the author, without books
+         */
+        void author(Author author);
+
+        /**
+         * Receives one author-ISBN link.
+         *
+         * @param authorID the author's ID
+         * @param isbn     the book's ISBN
+         */
+        void link(int authorID, Isbn isbn);
+    }
+
+    /**
+     * Opens the backend, connecting or recovering as necessary.
+     *
+     * @throws StorageException if the backend cannot be opened
+     */
+    void open() throws StorageException;
+
+    /**
+     * Streams the whole catalog to the given loader.
+     *
+     * @param loader the receiver of titles, authors and links
+     * @throws StorageException if the catalog cannot be read
+     */
+    void load(Loader loader) throws StorageException;
+
+    /**
+     * Reads a single title, seeing all writes made through this backend.
+     *
+     * @param isbn the ISBN to look up
+     * @return the book without authors, or null if there is none
+     * @throws StorageException if the title cannot be read
+     */
+    Book fetchBook(Isbn isbn) throws StorageException;
+
+    /**
+     * Reads a single author, seeing all writes made through this backend.
+     *
+     * @param authorID the ID to look up
+     * @return the author without books, or null if there is none
+     * @throws StorageException if the author cannot be read
+     */
+    Author fetchAuthor(int authorID) throws StorageException;
+
+    /**
+     * Stores a new title and links it to each author in its author list.
+     *
+     * @param book the book to store
+     * @return true if the title was stored; false if its ISBN already exists
+     * @throws StorageException if the title cannot be stored
+     */
+    boolean insertBook(Book book) throws StorageException;
+
+    /**
+     * Stores a new author and assigns its generated ID with {@link Author#setAuthorID(int)}.
+     *
+     * @param author the author to store
+     * @return true if the author was stored
+     * @throws StorageException if the author cannot be stored
+     */
+    boolean insertAuthor(Author author) throws StorageException;
+
+    /**
+     * Overwrites the title, edition number and copyright of an existing title if its stored
+     * version equals {@link Book#getVersion()}, then increments the version of both.
+     *
+     * @param book the book to update
+     * @return true if the title was updated; false if it does not exist
+     * @throws VersionConflictException if the title was updated by another writer since the
+     *                                  book's version was read
+     * @throws StorageException         if the title cannot be updated
+     */
+    boolean updateBook(Book book) throws StorageException;
+
+    /**
+     * Overwrites the name of an existing author if its stored version equals
+     * {@link Author#getVersion()}, then increments the version of both.
+     *
+     * @param author the author to update
+     * @return true if the author was updated; false if it does not exist
+     * @throws VersionConflictException if the author was updated by another writer since the
+     *                                  author's version was read
+     * @throws StorageException         if the author cannot be updated
+     */
+    boolean updateAuthor(Author author) throws StorageException;
+
+    /**
+     * Adds and removes author-ISBN links for one title as a single atomic change.
+     *
+     * @param isbn            the title's ISBN
+     * @param addAuthorIDs    the authors to link to the title
+     * @param removeAuthorIDs the authors to unlink from the title
+     * @throws StorageException if the links cannot be changed; no link is changed in that case
+     */
+    void updateLinks(Isbn isbn, Collection<Integer> addAuthorIDs, Collection<Integer> removeAuthorIDs)
+            throws StorageException;
+
+    /**
+     * Deletes titles together with all of their author-ISBN links as a single atomic change.
+     *
+     * @param isbns the ISBNs of the titles to delete
+     * @return the number of titles deleted
+     * @throws StorageException if the titles cannot be deleted
+     */
+    int deleteBooks(Collection<Isbn> isbns) throws StorageException;
+
+    /**
+     * Deletes authors together with all of their author-ISBN links as a single atomic change.
+     *
+     * @param authorIDs the IDs of the authors to delete
+     * @return the number of authors deleted
+     * @throws StorageException if the authors cannot be deleted
+     */
+    int deleteAuthors(Collection<Integer> authorIDs) throws StorageException;
+
+    /**
+     * Releases connections, files and threads held by the backend.
+     */
+    void close();
+}
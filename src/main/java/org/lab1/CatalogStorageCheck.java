@@ -0,0 +1,261 @@
+package org.lab1;
+
+import java.util.*;
+
+/**
+ * Runs the same create, read, update and delete checks against whichever {@link CatalogStorage}
+ * backend is selected, so that the JDBC and log backends can be shown to behave alike.
+ * <p>
+ * The backend is chosen exactly as the application chooses it, with {@code books.storage}
+ * ({@code jdbc} or {@code log}) and the {@code books.db.*} or {@code books.storage.dir}
+ * properties. The checks only touch authors they create and titles with ISBNs from the
+ * otherwise unused 0-99999 and 979-8-9998 ranges, and remove them again at the end, so they
+ * can be run against a database that holds real data. Besides the normal cases they cover
+ * the edge cases where backends are most likely to differ: duplicate ISBNs in either form,
+ * unknown authors, stale versions, missing rows, repeated links and reopening the backend.
+ * </p>
+ * <p>
+ * Prints one line per check and exits with status 1 if any check fails.
+ * Usage: {@code java -Dbooks.storage=log -Dbooks.storage.dir=/tmp/check -cp target/classes
+ * org.lab1.CatalogStorageCheck}.
+ * </p>
+ */
+public class CatalogStorageCheck {
+    // far above any ID either backend hands out in these checks
+    private static final int UNKNOWN_AUTHOR = Integer.MAX_VALUE - 7;
+
+    private final List<Isbn> isbns = new ArrayList<>();
+    private final List<Integer> authorIDs = new ArrayList<>();
+    private CatalogStorage storage;
+    private int failures;
+
+    /**
+     * Runs the checks and prints the results.
+     *
+     * @param args unused
+     */
+    public static void main(String[] args) {
+        CatalogStorageCheck check = new CatalogStorageCheck();
+        try {
+            check.run();
+        } catch (StorageException | RuntimeException e) {
+            e.printStackTrace();
+            check.failures++;
+        } finally {
+            check.cleanUp();
+        }
+        System.out.println(check.failures == 0 ? "All checks passed" : check.failures + " checks failed");
+        if (check.failures > 0) {
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Runs every check in order; later checks build on the rows written by earlier ones.
+     *
+     * @throws StorageException if the backend fails where a check does not expect it to
+     */
+    private void run() throws StorageException {
+        System.out.println("Backend: " + System.getProperty("books.storage", "jdbc"));
+        storage = BookDatabaseManager.createStorage();
+        storage.open();
+
+        Author first = new Author(0, "Check", "First");
+        Author second = new Author(0, "Check", "Second");
+        Author third = new Author(0, "Check", "Third");
+        for (Author author : List.of(first, second, third)) {
+            check("insertAuthor stores a new author", storage.insertAuthor(author));
+            authorIDs.add(author.getAuthorID());
+        }
+        check("insertAuthor assigns distinct IDs", new HashSet<>(authorIDs).size() == 3 && !authorIDs.contains(0));
+        Author fetchedAuthor = storage.fetchAuthor(first.getAuthorID());
+        check("fetchAuthor returns the stored author", fetchedAuthor != null
+                && fetchedAuthor.getLastName().equals("First") && fetchedAuthor.getVersion() == 0);
+        check("fetchAuthor returns null for an unknown ID", storage.fetchAuthor(UNKNOWN_AUTHOR) == null);
+
+        Isbn isbn = track(Isbn.parse(isbn10(1)));
+        Isbn other = track(Isbn.parse(isbn13(2)));
+        Book book = new Book(isbn, "Storage check", 1, "2024");
+        book.addAuthor(first);
+        book.addAuthor(second);
+        check("insertBook stores a new title", storage.insertBook(book));
+        Book fetched = storage.fetchBook(isbn);
+        check("fetchBook returns the stored title", fetched != null && fetched.getTitle().equals("Storage check")
+                && fetched.getVersion() == 0);
+        check("fetchBook finds the title by its other ISBN form",
+                storage.fetchBook(Isbn.parse(isbn.toIsbn13())) != null);
+        check("fetchBook returns null for an unknown ISBN", storage.fetchBook(track(Isbn.parse(isbn13(3)))) == null);
+        check("insertBook rejects an existing ISBN",
+                !storage.insertBook(new Book(isbn, "Duplicate", 1, "2024")));
+        check("insertBook rejects an existing ISBN in its other form",
+                !storage.insertBook(new Book(Isbn.parse(isbn.toIsbn13()), "Duplicate", 1, "2024")));
+
+        Book orphan = new Book(other, "Unknown author", 1, "2024");
+        orphan.addAuthor(new Author(UNKNOWN_AUTHOR, "No", "One"));
+        checkThrows("insertBook with an unknown author throws", () -> storage.insertBook(orphan));
+        check("insertBook with an unknown author stores nothing", storage.fetchBook(other) == null);
+
+        Book edit = storage.fetchBook(isbn);
+        edit.setTitle("Storage check, second edition");
+        edit.setEditionNumber(2);
+        check("updateBook updates a title", storage.updateBook(edit) && edit.getVersion() == 1);
+        check("updateBook is visible to fetchBook", storage.fetchBook(isbn).getEditionNumber() == 2);
+        Book stale = new Book(isbn, "Stale", 3, "2024");
+        checkConflict("updateBook with a stale version throws VersionConflictException",
+                () -> storage.updateBook(stale));
+        check("updateBook with a stale version changes nothing", storage.fetchBook(isbn).getVersion() == 1);
+        check("updateBook returns false for a missing title", !storage.updateBook(new Book(other, "Missing", 1, "2024")));
+
+        Author renamed = storage.fetchAuthor(third.getAuthorID());
+        renamed.setFirstName("Renamed");
+        check("updateAuthor updates an author", storage.updateAuthor(renamed) && renamed.getVersion() == 1);
+        Author staleAuthor = new Author(third.getAuthorID(), "Stale", "Third");
+        checkConflict("updateAuthor with a stale version throws VersionConflictException",
+                () -> storage.updateAuthor(staleAuthor));
+        check("updateAuthor returns false for a missing author",
+                !storage.updateAuthor(new Author(UNKNOWN_AUTHOR, "No", "One")));
+
+        check("insertBook links its authors", links(isbn).equals(Set.of(first.getAuthorID(), second.getAuthorID())));
+        storage.updateLinks(isbn, List.of(third.getAuthorID()), List.of(second.getAuthorID()));
+        check("updateLinks adds and removes links", links(isbn).equals(Set.of(first.getAuthorID(), third.getAuthorID())));
+        storage.updateLinks(isbn, List.of(first.getAuthorID()), List.of(second.getAuthorID()));
+        check("updateLinks ignores existing and missing links",
+                links(isbn).equals(Set.of(first.getAuthorID(), third.getAuthorID())));
+        checkThrows("updateLinks with an unknown author throws",
+                () -> storage.updateLinks(isbn, List.of(UNKNOWN_AUTHOR), List.of(first.getAuthorID())));
+        check("updateLinks with an unknown author changes nothing",
+                links(isbn).equals(Set.of(first.getAuthorID(), third.getAuthorID())));
+        checkThrows("updateLinks adding to a missing title throws",
+                () -> storage.updateLinks(other, List.of(first.getAuthorID()), List.of()));
+        storage.updateLinks(other, List.of(), List.of(first.getAuthorID()));
+        check("updateLinks removing from a missing title does nothing", storage.fetchBook(other) == null);
+
+        storage.close();
+        storage = BookDatabaseManager.createStorage();
+        storage.open();
+        Book reopened = storage.fetchBook(isbn);
+        check("a reopened backend sees every write", reopened != null && reopened.getVersion() == 1
+                && reopened.getEditionNumber() == 2 && storage.fetchAuthor(third.getAuthorID()).getVersion() == 1
+                && links(isbn).equals(Set.of(first.getAuthorID(), third.getAuthorID())));
+
+        Book second10 = new Book(track(Isbn.parse(isbn10(4))), "Storage check two", 1, "2024");
+        second10.addAuthor(first);
+        check("insertBook stores a second title", storage.insertBook(second10));
+        check("deleteAuthors deletes existing authors only",
+                storage.deleteAuthors(List.of(first.getAuthorID(), UNKNOWN_AUTHOR)) == 1);
+        check("deleteAuthors removes the author", storage.fetchAuthor(first.getAuthorID()) == null);
+        check("deleteAuthors removes the author's links and keeps the titles",
+                links(isbn).equals(Set.of(third.getAuthorID())) && links(second10.getIsbnKey()).isEmpty()
+                        && storage.fetchBook(second10.getIsbnKey()) != null);
+        Author next = new Author(0, "Check", "Next");
+        check("insertAuthor after a delete stores a new author", storage.insertAuthor(next));
+        authorIDs.add(next.getAuthorID());
+        check("insertAuthor does not reuse a deleted ID", next.getAuthorID() > Collections.max(authorIDs.subList(0, 3)));
+
+        check("deleteBooks counts each title once, in either ISBN form",
+                storage.deleteBooks(List.of(isbn, Isbn.parse(isbn.toIsbn13()), other)) == 1);
+        check("deleteBooks removes the title", storage.fetchBook(isbn) == null);
+        check("deleteBooks removes the title's links", links(isbn).isEmpty());
+        check("deleteBooks returns 0 when nothing matches", storage.deleteBooks(List.of(isbn, other)) == 0);
+    }
+
+    /**
+     * Returns the IDs of the authors linked to a title, as seen by a full load.
+     */
+    private Set<Integer> links(Isbn isbn) throws StorageException {
+        Set<Integer> linked = new HashSet<>();
+        storage.load(new CatalogStorage.Loader() {
+            @Override
+            public void book(Book book) {
+            }
+
+            @Override
+            public void author(Author author) {
+            }
+
+            @Override
+            public void link(int authorID, Isbn linkedIsbn) {
+                if (linkedIsbn.equals(isbn)) {
+                    linked.add(authorID);
+                }
+            }
+        });
+        return linked;
+    }
+
+    /**
+     * Removes every title and author the checks may have created.
+     */
+    private void cleanUp() {
+        if (storage == null) {
+            return;
+        }
+        try {
+            storage.deleteBooks(isbns);
+            storage.deleteAuthors(authorIDs);
+        } catch (StorageException e) {
+            e.printStackTrace();
+        }
+        storage.close();
+    }
+
+    private Isbn track(Isbn isbn) {
+        isbns.add(isbn);
+        return isbn;
+    }
+
+    private void check(String name, boolean passed) {
+        System.out.println((passed ? "PASS " : "FAIL ") + name);
+        if (!passed) {
+            failures++;
+        }
+    }
+
+    private interface Action {
+        void run() throws StorageException;
+    }
+
+    private void checkThrows(String name, Action action) {
+        try {
+            action.run();
+            check(name, false);
+        } catch (StorageException e) {
+            check(name, !(e instanceof VersionConflictException));
+        }
+    }
+
+    private void checkConflict(String name, Action action) {
+        try {
+            action.run();
+            check(name, false);
+        } catch (StorageException e) {
+            check(name, e instanceof VersionConflictException);
+        }
+    }
+
+    /**
+     * Returns the n-th synthetic ISBN-10 in the 0-99999 range, with a valid check digit.
+     */
+    private static String isbn10(int n) {
+        String body = "099999" + String.format("%03d", n);
+        int sum = 0;
+        for (int i = 0; i < 9; i++) {
+            sum += (10 - i) * (body.charAt(i) - '0');
+        }
+        int check = (11 - sum % 11) % 11;
+        return body + (check == 10 ? "X" : String.valueOf(check));
+    }
+
+    /**
+     * Returns the n-th synthetic ISBN-13 in the 979-8-9998 range, with a valid check digit.
+     */
+    private static String isbn13(int n) {
+        String body = "97989998" + String.format("%04d", n);
+        int sum = 0;
+        for (int i = 0; i < 12; i++) {
+            int digit = body.charAt(i) - '0';
+            sum += i % 2 == 0 ? digit : 3 * digit;
+        }
+        return body + (10 - sum % 10) % 10;
+    }
+}
@@ -0,0 +1,177 @@
+package org.lab1;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Measures optimistic locking under contention between several application instances that
+ * share one MariaDB database.
+ * <p>
+ * Each worker thread is a separate instance: it has its own {@link BookDatabaseManager}, with
+ * its own storage backend and connection pool configured from the {@code books.db.*} system
+ * properties, just as a separate process would. BookDatabaseManager is not meant to be
+ * updated from several threads at once, so no manager is shared. The benchmark adds a small
+ * set of synthetic titles, then every worker repeatedly increments a random title's edition
+ * number through
+ * {@link BookDatabaseManager#updateBook(Book, BookDatabaseManager.ConflictResolver)}, with a
+ * resolver that re-applies the increment to the current values after a conflict.
+ * </p>
+ * <p>
+ * It prints the throughput and how often updates conflicted, then reloads the titles and
+ * checks that no update was lost: each title's edition number must have grown by exactly
+ * the number of successful updates, and its version by the same amount. The synthetic titles
+ * use ISBNs with the otherwise unused prefix 979-8-9999 and are deleted at the end. The exit
+ * status is 1 if any update was lost, so the benchmark can also be run as a test.
+ * </p>
+ * <p>
+ * Usage: {@code java -Dbooks.db.url=... -cp target/classes:mariadb-java-client.jar
+ * org.lab1.ContentionBenchmark [instances] [titles] [updates]} (defaults 8 instances, 4 titles
+ * and 200 updates per instance).
+ * </p>
+ */
+public class ContentionBenchmark {
+    private static final String ISBN_PREFIX = "97989999";
+    private static final int INITIAL_EDITION = 1;
+
+    /**
+     * Runs the benchmark and prints the results.
+     *
+     * @param args optional numbers of instances, titles and updates per instance
+     * @throws InterruptedException if interrupted while waiting for the workers
+     */
+    public static void main(String[] args) throws InterruptedException {
+        int instances = args.length > 0 ? Integer.parseInt(args[0]) : 8;
+        int titleCount = args.length > 1 ? Integer.parseInt(args[1]) : 4;
+        int updatesPerInstance = args.length > 2 ? Integer.parseInt(args[2]) : 200;
+        boolean lost = false;
+
+        List<Isbn> isbns = new ArrayList<>();
+        for (int i = 0; i < titleCount; i++) {
+            isbns.add(Isbn.parse(isbn13(i)));
+        }
+
+        BookDatabaseManager setup = new BookDatabaseManager();
+        setup.loadData();
+        if (!setup.awaitReady()) {
+            System.err.println("Could not load the catalog");
+            return;
+        }
+        List<BookDatabaseManager> managers = new ArrayList<>();
+        try {
+            deleteTitles(setup, isbns);
+            for (int i = 0; i < titleCount; i++) {
+                if (!setup.addBook(new Book(isbns.get(i), "Contention benchmark " + i, INITIAL_EDITION, "2024"))) {
+                    System.err.println("Could not add title " + isbns.get(i));
+                    return;
+                }
+            }
+            for (int i = 0; i < instances; i++) {
+                BookDatabaseManager manager = new BookDatabaseManager();
+                manager.loadData();
+                managers.add(manager);
+            }
+
+            AtomicInteger[] successes = new AtomicInteger[titleCount];
+            for (int i = 0; i < titleCount; i++) {
+                successes[i] = new AtomicInteger();
+            }
+            AtomicInteger conflicts = new AtomicInteger();
+            AtomicInteger failures = new AtomicInteger();
+            BookDatabaseManager.ConflictResolver<Book> increment = (attempted, current) -> {
+                conflicts.incrementAndGet();
+                current.setEditionNumber(current.getEditionNumber() + 1);
+                return current;
+            };
+
+            List<Thread> workers = new ArrayList<>();
+            for (int i = 0; i < instances; i++) {
+                BookDatabaseManager manager = managers.get(i);
+                Random random = new Random(31L * i);
+                workers.add(new Thread(() -> {
+                    for (int n = 0; n < updatesPerInstance; n++) {
+                        int title = random.nextInt(titleCount);
+                        Book loaded = manager.getBookByISBN(isbns.get(title));
+                        // work on a copy, as the application would on an edit form
+                        Book edit = new Book(loaded.getIsbnKey(), loaded.getTitle(),
+                                loaded.getEditionNumber() + 1, loaded.getCopyright());
+                        edit.setVersion(loaded.getVersion());
+                        if (manager.updateBook(edit, increment)) {
+                            successes[title].incrementAndGet();
+                        } else {
+                            failures.incrementAndGet();
+                        }
+                    }
+                }));
+            }
+            long start = System.nanoTime();
+            for (Thread worker : workers) {
+                worker.start();
+            }
+            for (Thread worker : workers) {
+                worker.join();
+            }
+            long elapsed = System.nanoTime() - start;
+
+            int attempted = instances * updatesPerInstance;
+            int succeeded = attempted - failures.get();
+            System.out.printf("%d instances on %d titles: %d updates in %d ms (%.0f updates/s)%n",
+                    instances, titleCount, attempted, elapsed / 1_000_000, succeeded * 1e9 / elapsed);
+            System.out.printf("%d succeeded, %d gave up; %d conflicts (%.2f per successful update)%n",
+                    succeeded, failures.get(), conflicts.get(), (double) conflicts.get() / Math.max(1, succeeded));
+
+            BookDatabaseManager checker = new BookDatabaseManager();
+            checker.loadData();
+            for (int i = 0; i < titleCount; i++) {
+                Book stored = checker.getBookByISBN(isbns.get(i));
+                int expected = successes[i].get();
+                if (stored.getEditionNumber() - INITIAL_EDITION != expected || stored.getVersion() != expected) {
+                    System.out.printf("Title %s: %d successful updates, but edition %d and version %d%n",
+                            stored.getIsbn(), expected, stored.getEditionNumber(), stored.getVersion());
+                    lost = true;
+                }
+            }
+            checker.close();
+            System.out.println(lost ? "Updates were lost" : "No updates were lost");
+        } finally {
+            for (BookDatabaseManager manager : managers) {
+                manager.close();
+            }
+            deleteTitles(setup, isbns);
+            setup.close();
+        }
+        if (lost) {
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Deletes whichever of the synthetic titles exist, as loaded by the given manager.
+     */
+    private static void deleteTitles(BookDatabaseManager manager, List<Isbn> isbns) {
+        List<Book> existing = new ArrayList<>();
+        for (Isbn isbn : isbns) {
+            Book book = manager.getBookByISBN(isbn);
+            if (book != null) {
+                existing.add(book);
+            }
+        }
+        if (!existing.isEmpty()) {
+            manager.deleteBooks(existing);
+        }
+    }
+
+    /**
+     * Returns the n-th synthetic ISBN-13, with a valid check digit.
+     */
+    private static String isbn13(int n) {
+        String body = ISBN_PREFIX + String.format("%04d", n);
+        int sum = 0;
+        for (int i = 0; i < 12; i++) {
+            int digit = body.charAt(i) - '0';
+            sum += i % 2 == 0 ? digit : 3 * digit;
+        }
+        return body + (10 - sum % 10) % 10;
+    }
+}
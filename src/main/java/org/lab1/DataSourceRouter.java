@@ -0,0 +1,458 @@
+package org.lab1;
+
+import java.sql.*;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Routes database work between a single primary and any number of read replicas.
+ * <p>
+ * Writes and read-your-writes lookups always use the primary. Bulk loads and other read
+ * queries are spread over the healthy replicas, either round-robin or by picking the replica
+ * with the fewest connections in use. A replica is taken out of rotation when its connection is
+ * no longer valid or when it lags the primary by more than the configured number of seconds,
+ * and is put back once a later health check passes. When no replica is usable, reads fall
+ * back to the primary.
+ * </p>
+ * <p>
+ * Each server has a small pool of connections, so a long table scan does not hold up point
+ * queries or writes on the same server. Connections are borrowed with {@link #acquireWrite()}
+ * or {@link #acquireRead()} and returned by closing the {@link Lease}. A closed connection is
+ * discarded when it is returned, and an idle connection is checked with
+ * {@link Connection#isValid(int)} before it is lent out again, so one that the server dropped
+ * while it sat in the pool is replaced by a new one. A caller waits at most
+ * {@value #BORROW_TIMEOUT_MILLIS} ms for a connection when the pool is full and then gets a
+ * {@link SQLTransientConnectionException}.
+ * </p>
+ * <p>
+ * The router is configured from system properties so that it can be pointed at two local
+ * database instances without code changes, e.g.
+ * {@code -Dbooks.db.url=jdbc:mariadb://localhost:3306/books
+ * -Dbooks.db.replicas=jdbc:mariadb://localhost:3307/books}.
+ * </p>
+ */
+public class DataSourceRouter {
+    /**
+     * The policy used to choose a replica for a read.
+     */
+    public enum Strategy {
+        ROUND_ROBIN,
+        LEAST_LOADED
+    }
+
+    private static final int VALIDATION_TIMEOUT_SECONDS = 2;
+    private static final long BORROW_TIMEOUT_MILLIS = 30_000;
+    private static final int DEFAULT_POOL_SIZE = 4;
+
+    private final Endpoint primary;
+    private final List<Endpoint> replicas;
+    private final Strategy strategy;
+    private final long maxLagSeconds;
+    private final long healthCheckIntervalMillis;
+    private final AtomicInteger nextReplica = new AtomicInteger();
+    private volatile long lastHealthCheck;
+
+    /**
+     * Constructs a router for the given primary and replica URLs.
+     *
+     * @param primaryUrl                the JDBC URL of the primary
+     * @param replicaUrls               the JDBC URLs of the replicas (may be empty)
+     * @param user                      the database user
+     * @param password                  the database password
+     * @param strategy                  how to choose between healthy replicas
+     * @param maxLagSeconds             the replication lag above which a replica is removed from rotation
+     * @param healthCheckIntervalMillis how often replicas are re-checked
+     * @param poolSize                  the maximum number of connections to each server
+     */
+    public DataSourceRouter(String primaryUrl, List<String> replicaUrls, String user, String password,
+                            Strategy strategy, long maxLagSeconds, long healthCheckIntervalMillis, int poolSize) {
+        if (poolSize < 1) {
+            throw new IllegalArgumentException("Pool size must be at least 1");
+        }
+        this.primary = new Endpoint(primaryUrl, user, password, poolSize);
+        this.replicas = new ArrayList<>();
+        for (String url : replicaUrls) {
+            replicas.add(new Endpoint(url, user, password, poolSize));
+        }
+        this.strategy = strategy;
+        this.maxLagSeconds = maxLagSeconds;
+        this.healthCheckIntervalMillis = healthCheckIntervalMillis;
+    }
+
+    /**
+     * Creates a router from the {@code books.db.*} system properties, using the given values
+     * for anything that is not set.
+     *
+     * @param defaultUrl      the primary URL used when {@code books.db.url} is not set
+     * @param defaultUser     the user used when {@code books.db.user} is not set
+     * @param defaultPassword the password used when {@code books.db.password} is not set
+     * @return the configured router
+     */
+    public static DataSourceRouter fromSystemProperties(String defaultUrl, String defaultUser, String defaultPassword) {
+        String url = System.getProperty("books.db.url", defaultUrl);
+        String user = System.getProperty("books.db.user", defaultUser);
+        String password = System.getProperty("books.db.password", defaultPassword);
+        List<String> replicaUrls = new ArrayList<>();
+        for (String replica : System.getProperty("books.db.replicas", "").split(",")) {
+            if (!replica.trim().isEmpty()) {
+                replicaUrls.add(replica.trim());
+            }
+        }
+        Strategy strategy = Strategy.valueOf(
+                System.getProperty("books.db.replicaStrategy", Strategy.ROUND_ROBIN.name()).toUpperCase());
+        long maxLag = Long.parseLong(System.getProperty("books.db.maxReplicaLagSeconds", "10"));
+        long interval = Long.parseLong(System.getProperty("books.db.healthCheckMillis", "5000"));
+        int poolSize = Integer.parseInt(System.getProperty("books.db.poolSize", String.valueOf(DEFAULT_POOL_SIZE)));
+        return new DataSourceRouter(url, replicaUrls, user, password, strategy, maxLag, interval, poolSize);
+    }
+
+    /**
+     * Checks that the primary can be reached and checks every replica.
+     * <p>
+     * A replica that cannot be reached is simply left out of rotation; only a failure to
+     * reach the primary is reported to the caller.
+     * </p>
+     *
+     * @throws SQLException if the primary cannot be reached
+     */
+    public void connect() throws SQLException {
+        try (Lease lease = acquireWrite()) {
+            lease.getConnection();
+        }
+        checkReplicas();
+    }
+
+    /**
+     * Borrows a primary connection, used for writes and read-your-writes lookups. The lease
+     * must be closed when the work is finished to return the connection to the pool.
+     *
+     * @return a lease on a primary connection
+     * @throws SQLException if no primary connection can be opened
+     */
+    public Lease acquireWrite() throws SQLException {
+        return primary.acquire();
+    }
+
+    /**
+     * Borrows a connection for a read query from a healthy replica, or from the primary when
+     * no replica is available. The lease must be closed when the read is finished to return
+     * the connection to the pool.
+     *
+     * @return a lease on a read connection
+     * @throws SQLException if neither a replica nor the primary can be used
+     */
+    public Lease acquireRead() throws SQLException {
+        if (System.currentTimeMillis() - lastHealthCheck > healthCheckIntervalMillis) {
+            checkReplicas();
+        }
+        Endpoint endpoint = selectReplica();
+        if (endpoint == null) {
+            return primary.acquire();
+        }
+        try {
+            return endpoint.acquire();
+        } catch (SQLTransientConnectionException e) {
+            // the replica's pool is busy, not broken
+            return primary.acquire();
+        } catch (SQLException e) {
+            endpoint.healthy = false;
+            return primary.acquire();
+        }
+    }
+
+    /**
+     * Re-checks the validity and replication lag of every replica and updates which of them
+     * are in rotation.
+     * <p>
+     * A replica whose pool stays full for {@value #VALIDATION_TIMEOUT_SECONDS} seconds is busy
+     * rather than broken, so it keeps its current state until the next check; this also bounds
+     * how long the check holds up other readers.
+     * </p>
+     */
+    public synchronized void checkReplicas() {
+        for (Endpoint replica : replicas) {
+            try (Lease lease = replica.acquire(VALIDATION_TIMEOUT_SECONDS * 1000L)) {
+                Connection connection = lease.getConnection();
+                replica.healthy = connection.isValid(VALIDATION_TIMEOUT_SECONDS)
+                        && replicationLag(connection) <= maxLagSeconds;
+            } catch (SQLTransientConnectionException e) {
+                // every connection is on loan; check again next time
+            } catch (SQLException e) {
+                replica.healthy = false;
+                replica.close(false);
+            }
+        }
+        lastHealthCheck = System.currentTimeMillis();
+    }
+
+    /**
+     * Closes the idle connections to every server. Connections still on loan are closed
+     * when their leases are closed.
+     */
+    public void close() {
+        primary.close(true);
+        for (Endpoint replica : replicas) {
+            replica.close(true);
+        }
+    }
+
+    /**
+     * Chooses a healthy replica according to the configured strategy.
+     *
+     * @return the chosen replica, or null if none is healthy
+     */
+    private Endpoint selectReplica() {
+        List<Endpoint> healthy = new ArrayList<>();
+        for (Endpoint replica : replicas) {
+            if (replica.healthy) {
+                healthy.add(replica);
+            }
+        }
+        if (healthy.isEmpty()) {
+            return null;
+        }
+        if (strategy == Strategy.LEAST_LOADED) {
+            Endpoint best = healthy.get(0);
+            for (Endpoint replica : healthy) {
+                if (replica.inFlight.get() < best.inFlight.get()) {
+                    best = replica;
+                }
+            }
+            return best;
+        }
+        return healthy.get(Math.floorMod(nextReplica.getAndIncrement(), healthy.size()));
+    }
+
+    /**
+     * Returns how many seconds the given server is behind its primary.
+     * <p>
+     * A server that is not configured as a replica reports no status and is treated as
+     * fully caught up; a replica whose SQL thread is stopped reports a null lag and is
+     * treated as infinitely behind.
+     * </p>
+     *
+     * @param connection a connection to the replica
+     * @return the replication lag in seconds
+     * @throws SQLException if the status query fails
+     */
+    private static long replicationLag(Connection connection) throws SQLException {
+        try (Statement st = connection.createStatement()) {
+            st.setQueryTimeout(VALIDATION_TIMEOUT_SECONDS);
+            try (ResultSet rs = st.executeQuery("SHOW SLAVE STATUS")) {
+                if (!rs.next()) {
+                    return 0;
+                }
+                long lag = rs.getLong("Seconds_Behind_Master");
+                return rs.wasNull() ? Long.MAX_VALUE : lag;
+            }
+        }
+    }
+
+    /**
+     * A single database server and its pool of connections.
+     */
+    private static class Endpoint {
+        private final String url;
+        private final String user;
+        private final String password;
+        private final int poolSize;
+        // connections on loan plus callers waiting for one; used for least-loaded selection
+        private final AtomicInteger inFlight = new AtomicInteger();
+        // guarded by this
+        private final Deque<Connection> idle = new ArrayDeque<>();
+        private int openCount;
+        private boolean closed;
+        private volatile boolean healthy;
+
+        Endpoint(String url, String user, String password, int poolSize) {
+            this.url = url;
+            this.user = user;
+            this.password = password;
+            this.poolSize = poolSize;
+        }
+
+        /**
+         * Borrows a connection, waiting at most {@link #BORROW_TIMEOUT_MILLIS} for one.
+         */
+        Lease acquire() throws SQLException {
+            return acquire(BORROW_TIMEOUT_MILLIS);
+        }
+
+        /**
+         * Borrows a valid idle connection, opening a new one if the pool is not full and
+         * waiting for one to be returned otherwise.
+         *
+         * @throws SQLTransientConnectionException if no connection is free within the timeout
+         */
+        Lease acquire(long timeoutMillis) throws SQLException {
+            inFlight.incrementAndGet();
+            try {
+                return new Lease(this, borrow(timeoutMillis));
+            } catch (SQLException | RuntimeException e) {
+                inFlight.decrementAndGet();
+                throw e;
+            }
+        }
+
+        private Connection borrow(long timeoutMillis) throws SQLException {
+            long deadline = System.currentTimeMillis() + timeoutMillis;
+            while (true) {
+                Connection connection;
+                synchronized (this) {
+                    connection = idle.pollFirst();
+                    while (connection == null && openCount >= poolSize) {
+                        long remaining = deadline - System.currentTimeMillis();
+                        if (remaining <= 0) {
+                            throw new SQLTransientConnectionException("No connection to " + url
+                                    + " became free within " + timeoutMillis + " ms");
+                        }
+                        try {
+                            wait(remaining);
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                            throw new SQLException("Interrupted while waiting for a connection to " + url, e);
+                        }
+                        connection = idle.pollFirst();
+                    }
+                    if (connection == null) {
+                        openCount++;
+                    }
+                }
+                if (connection == null) {
+                    return open();
+                }
+                // validate outside the lock; the server may have dropped the connection while it was idle
+                if (isValid(connection)) {
+                    return connection;
+                }
+                discard(connection);
+            }
+        }
+
+        /**
+         * Opens a new connection for a slot that the caller has already counted in {@code openCount}.
+         */
+        private Connection open() throws SQLException {
+            // connect outside the lock so that a slow server does not block returns
+            try {
+                return DriverManager.getConnection(url, user, password);
+            } catch (SQLException | RuntimeException e) {
+                synchronized (this) {
+                    openCount--;
+                    notify();
+                }
+                throw e;
+            }
+        }
+
+        private static boolean isValid(Connection connection) {
+            try {
+                return connection.isValid(VALIDATION_TIMEOUT_SECONDS);
+            } catch (SQLException e) {
+                return false;
+            }
+        }
+
+        /**
+         * Closes a connection that failed validation and frees its slot in the pool.
+         */
+        private void discard(Connection connection) {
+            try {
+                connection.close();
+            } catch (SQLException e) {
+                // already broken; nothing more to do
+            }
+            synchronized (this) {
+                openCount--;
+                notify();
+            }
+        }
+
+        /**
+         * Returns a connection to the pool, or discards it if it has been closed.
+         */
+        private void release(Connection connection) {
+            boolean usable;
+            try {
+                usable = !connection.isClosed();
+            } catch (SQLException e) {
+                usable = false;
+            }
+            boolean discard;
+            synchronized (this) {
+                discard = !usable || closed;
+                if (discard) {
+                    openCount--;
+                } else {
+                    idle.addFirst(connection);
+                }
+                notify();
+            }
+            inFlight.decrementAndGet();
+            if (discard && usable) {
+                try {
+                    connection.close();
+                } catch (SQLException e) {
+                    e.printStackTrace();
+                }
+            }
+        }
+
+        /**
+         * Closes every idle connection. Connections on loan are closed when they are returned
+         * if {@code shutdown} is true, and go back into the pool otherwise.
+         */
+        void close(boolean shutdown) {
+            List<Connection> toClose;
+            synchronized (this) {
+                closed = shutdown;
+                toClose = new ArrayList<>(idle);
+                openCount -= idle.size();
+                idle.clear();
+                notifyAll();
+            }
+            for (Connection connection : toClose) {
+                try {
+                    connection.close();
+                } catch (SQLException e) {
+                    e.printStackTrace();
+                }
+            }
+        }
+    }
+
+    /**
+     * A pooled connection on loan to one caller. Closing the lease returns the connection to
+     * its pool but leaves it open for reuse.
+     */
+    public static class Lease implements AutoCloseable {
+        private final Endpoint endpoint;
+        private final Connection connection;
+        private boolean released;
+
+        private Lease(Endpoint endpoint, Connection connection) {
+            this.endpoint = endpoint;
+            this.connection = connection;
+        }
+
+        /**
+         * Returns the borrowed connection.
+         *
+         * @return the connection
+         */
+        public Connection getConnection() {
+            return connection;
+        }
+
+        @Override
+        public void close() {
+            if (!released) {
+                released = true;
+                endpoint.release(connection);
+            }
+        }
+    }
+}
@@ -0,0 +1,233 @@
+package org.lab1;
+
+/**
+ * An immutable, validated ISBN packed into a single {@code long}.
+ * <p>
+ * Both ISBN-10 and ISBN-13 forms are accepted, with or without hyphens and spaces. Every ISBN
+ * is normalized to its 13-digit EAN value, so an ISBN-10 and the equivalent 978-prefixed
+ * ISBN-13 are equal and hash the same. The form the ISBN was written in is kept in one extra
+ * bit, so {@link #toString()} and {@link #unpack(long)} give back exactly the digits that were
+ * parsed (e.g. {@code 013299044X} stays an ISBN-10 when written back to the database).
+ * </p>
+ * <p>
+ * Layout of {@link #pack()}: bits 0-43 hold the 13-digit value (10<sup>13</sup> &lt; 2<sup>44</sup>)
+ * and bit 44 is set when the ISBN was given in ISBN-10 form.
+ * </p>
+ */
+public final class Isbn implements Comparable<Isbn> {
+    private static final long VALUE_MASK = (1L << 44) - 1;
+    private static final long ISBN10_FLAG = 1L << 44;
+    private static final long BOOKLAND_978 = 978_000_000_000_0L;
+
+    private final long packed;
+
+    private Isbn(long packed) {
+        this.packed = packed;
+    }
+
+    /**
+     * Parses and validates an ISBN-10 or ISBN-13.
+     *
+     * @param text the ISBN, optionally containing hyphens or spaces
+     * @return the parsed ISBN
+     * @throws IllegalArgumentException if the text is not a valid ISBN
+     */
+    public static Isbn parse(String text) {
+        Isbn isbn = tryParse(text);
+        if (isbn == null) {
+            throw new IllegalArgumentException("Invalid ISBN: " + text);
+        }
+        return isbn;
+    }
+
+    /**
+     * Parses and validates an ISBN-10 or ISBN-13 without throwing.
+     *
+     * @param text the ISBN, optionally containing hyphens or spaces
+     * @return the parsed ISBN, or null if the text is not a valid ISBN
+     */
+    public static Isbn tryParse(String text) {
+        if (text == null) {
+            return null;
+        }
+        char[] digits = new char[13];
+        int length = 0;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c == '-' || c == ' ') {
+                continue;
+            }
+            if (length == 13) {
+                return null;
+            }
+            digits[length++] = c;
+        }
+        if (length == 10) {
+            return parseIsbn10(digits);
+        }
+        if (length == 13) {
+            return parseIsbn13(digits);
+        }
+        return null;
+    }
+
+    /**
+     * Restores an ISBN from a value produced by {@link #pack()}.
+     *
+     * @param packed the packed value
+     * @return the ISBN
+     * @throws IllegalArgumentException if the value was not produced by {@link #pack()}
+     */
+    public static Isbn unpack(long packed) {
+        long value = packed & VALUE_MASK;
+        if ((packed & ~(VALUE_MASK | ISBN10_FLAG)) != 0 || value > 9_999_999_999_999L
+                || isbn13CheckDigit(value / 10) != value % 10
+                || ((packed & ISBN10_FLAG) != 0 && value / 10_000_000_000L != 978)) {
+            throw new IllegalArgumentException("Not a packed ISBN: " + packed);
+        }
+        return new Isbn(packed);
+    }
+
+    private static Isbn parseIsbn10(char[] digits) {
+        long body = 0;
+        int sum = 0;
+        for (int i = 0; i < 9; i++) {
+            int d = digits[i] - '0';
+            if (d < 0 || d > 9) {
+                return null;
+            }
+            body = body * 10 + d;
+            sum += (10 - i) * d;
+        }
+        char last = digits[9];
+        int check;
+        if (last == 'X' || last == 'x') {
+            check = 10;
+        } else if (last >= '0' && last <= '9') {
+            check = last - '0';
+        } else {
+            return null;
+        }
+        if ((sum + check) % 11 != 0) {
+            return null;
+        }
+        long prefix = BOOKLAND_978 / 10 + body;
+        long value = prefix * 10 + isbn13CheckDigit(prefix);
+        return new Isbn(value | ISBN10_FLAG);
+    }
+
+    private static Isbn parseIsbn13(char[] digits) {
+        long value = 0;
+        for (int i = 0; i < 13; i++) {
+            int d = digits[i] - '0';
+            if (d < 0 || d > 9) {
+                return null;
+            }
+            value = value * 10 + d;
+        }
+        long prefix = value / 10_000_000_000L;
+        if ((prefix != 978 && prefix != 979) || isbn13CheckDigit(value / 10) != value % 10) {
+            return null;
+        }
+        return new Isbn(value);
+    }
+
+    /**
+     * Computes the EAN-13 check digit for the first twelve digits.
+     */
+    private static long isbn13CheckDigit(long first12) {
+        int sum = 0;
+        for (int i = 0; i < 12; i++) {
+            int d = (int) (first12 % 10);
+            first12 /= 10;
+            // the rightmost of the twelve digits has weight 3
+            sum += (i % 2 == 0) ? d * 3 : d;
+        }
+        return (10 - sum % 10) % 10;
+    }
+
+    /**
+     * Returns the lossless packed form of this ISBN, including whether it was written as an ISBN-10.
+     *
+     * @return the packed value
+     */
+    public long pack() {
+        return packed;
+    }
+
+    /**
+     * Returns the normalized 13-digit value, which is the same for the ISBN-10 and ISBN-13
+     * forms of a book. This is the value used for equality, hashing and index keys.
+     *
+     * @return the 13-digit ISBN as a number
+     */
+    public long key() {
+        return packed & VALUE_MASK;
+    }
+
+    /**
+     * Returns whether this ISBN was given in ISBN-10 form.
+     *
+     * @return true for an ISBN-10
+     */
+    public boolean isIsbn10() {
+        return (packed & ISBN10_FLAG) != 0;
+    }
+
+    /**
+     * Returns the 13-digit form of this ISBN without hyphens.
+     *
+     * @return the ISBN-13
+     */
+    public String toIsbn13() {
+        String digits = Long.toString(key());
+        return "0000000000000".substring(digits.length()) + digits;
+    }
+
+    /**
+     * Returns the 10-digit form of this ISBN without hyphens, if it has one.
+     *
+     * @return the ISBN-10, or null for a 979-prefixed ISBN
+     */
+    public String toIsbn10() {
+        long value = key();
+        if (value / 10_000_000_000L != 978) {
+            return null;
+        }
+        long body = (value / 10) % 1_000_000_000L;
+        int sum = 0;
+        long rest = body;
+        for (int i = 9; i >= 1; i--) {
+            sum += (11 - i) * (int) (rest % 10);
+            rest /= 10;
+        }
+        int check = (11 - sum % 11) % 11;
+        String digits = Long.toString(body);
+        return "000000000".substring(digits.length()) + digits + (check == 10 ? "X" : Integer.toString(check));
+    }
+
+    /**
+     * Returns the ISBN in the form it was parsed from, without hyphens.
+     *
+     * @return the ISBN-10 or ISBN-13 digits
+     */
+    @Override
+    public String toString() {
+        return isIsbn10() ? toIsbn10() : toIsbn13();
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return o instanceof Isbn && ((Isbn) o).key() == key();
+    }
+
+    @Override
+    public int hashCode() {
+        return Long.hashCode(key());
+    }
+
+    @Override
+    public int compareTo(Isbn other) {
+        return Long.compare(key(), other.key());
+    }
+}
@@ -0,0 +1,142 @@
+package org.lab1;
+
+/**
+ * A hash index from {@link Isbn} to a value, stored as parallel primitive arrays.
+ * <p>
+ * Keys are the normalized 13-digit ISBN values held in a {@code long[]}, so a lookup hashes
+ * one long and compares longs instead of hashing and comparing strings, and no key objects
+ * or map entries are allocated per book. Collisions use linear probing and removal uses
+ * backward shifting, so the table never needs tombstones.
+ * </p>
+ *
+ * @param <V> the type of the indexed values
+ */
+public class IsbnIndex<V> {
+    private static final long EMPTY = 0L; // a valid ISBN-13 is never zero
+    private static final int MIN_CAPACITY = 16;
+
+    private long[] keys;
+    private Object[] values;
+    private int size;
+
+    /**
+     * Constructs an empty index.
+     */
+    public IsbnIndex() {
+        keys = new long[MIN_CAPACITY];
+        values = new Object[MIN_CAPACITY];
+    }
+
+    /**
+     * Returns the value stored for the given ISBN.
+     *
+     * @param isbn the ISBN to look up
+     * @return the value, or null if there is none
+     */
+    @SuppressWarnings("unchecked")
+    public V get(Isbn isbn) {
+        long key = isbn.key();
+        int mask = keys.length - 1;
+        for (int i = slot(key, mask); keys[i] != EMPTY; i = (i + 1) & mask) {
+            if (keys[i] == key) {
+                return (V) values[i];
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Stores a value for the given ISBN, replacing any previous value.
+     *
+     * @param isbn  the ISBN
+     * @param value the value to store
+     * @return the previous value, or null if there was none
+     */
+    @SuppressWarnings("unchecked")
+    public V put(Isbn isbn, V value) {
+        if ((size + 1) * 4 > keys.length * 3) {
+            resize(keys.length * 2);
+        }
+        long key = isbn.key();
+        int mask = keys.length - 1;
+        int i = slot(key, mask);
+        while (keys[i] != EMPTY) {
+            if (keys[i] == key) {
+                V previous = (V) values[i];
+                values[i] = value;
+                return previous;
+            }
+            i = (i + 1) & mask;
+        }
+        keys[i] = key;
+        values[i] = value;
+        size++;
+        return null;
+    }
+
+    /**
+     * Removes the value stored for the given ISBN.
+     *
+     * @param isbn the ISBN
+     * @return the removed value, or null if there was none
+     */
+    @SuppressWarnings("unchecked")
+    public V remove(Isbn isbn) {
+        long key = isbn.key();
+        int mask = keys.length - 1;
+        int i = slot(key, mask);
+        while (keys[i] != key) {
+            if (keys[i] == EMPTY) {
+                return null;
+            }
+            i = (i + 1) & mask;
+        }
+        V removed = (V) values[i];
+        // shift later entries of the probe run back so that lookups never stop early
+        int hole = i;
+        for (int j = (i + 1) & mask; keys[j] != EMPTY; j = (j + 1) & mask) {
+            int home = slot(keys[j], mask);
+            if (((j - home) & mask) >= ((j - hole) & mask)) {
+                keys[hole] = keys[j];
+                values[hole] = values[j];
+                hole = j;
+            }
+        }
+        keys[hole] = EMPTY;
+        values[hole] = null;
+        size--;
+        return removed;
+    }
+
+    /**
+     * Returns the number of ISBNs in the index.
+     *
+     * @return the size
+     */
+    public int size() {
+        return size;
+    }
+
+    private void resize(int capacity) {
+        long[] oldKeys = keys;
+        Object[] oldValues = values;
+        keys = new long[capacity];
+        values = new Object[capacity];
+        int mask = capacity - 1;
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != EMPTY) {
+                int j = slot(oldKeys[i], mask);
+                while (keys[j] != EMPTY) {
+                    j = (j + 1) & mask;
+                }
+                keys[j] = oldKeys[i];
+                values[j] = oldValues[i];
+            }
+        }
+    }
+
+    private static int slot(long key, int mask) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32)) & mask;
+    }
+}
@@ -0,0 +1,110 @@
+package org.lab1;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Compares {@link IsbnIndex} keyed by {@link Isbn} with a {@code HashMap} keyed by ISBN strings,
+ * which is how books were looked up before the Isbn type was introduced.
+ * <p>
+ * Lookups are measured two ways: from a key that is already held (a fresh {@code String} copy,
+ * so its hash is not cached, against an {@code Isbn}), and from ISBN text as a user would
+ * type it, which for the index includes parsing the text. Memory is the heap growth after
+ * filling each map, measured after a garbage collection, so it is approximate.
+ * </p>
+ * <p>
+ * Usage: {@code java -Xmx2g -cp target/classes org.lab1.IsbnIndexBenchmark [entries] [rounds]}
+ * (defaults 1000000 and 5).
+ * </p>
+ */
+public class IsbnIndexBenchmark {
+    private static final Object VALUE = new Object();
+
+    /**
+     * Runs the benchmark and prints the results.
+     *
+     * @param args optional number of entries and number of timed rounds
+     */
+    public static void main(String[] args) {
+        int entries = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        int rounds = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+
+        String[] texts = new String[entries];
+        Isbn[] isbns = new Isbn[entries];
+        for (int i = 0; i < entries; i++) {
+            texts[i] = isbn13(i);
+            isbns[i] = Isbn.parse(texts[i]);
+        }
+
+        long before = usedMemory();
+        Map<String, Object> stringMap = new HashMap<>();
+        for (String text : texts) {
+            stringMap.put(new String(text), VALUE);
+        }
+        long afterStringMap = usedMemory();
+        IsbnIndex<Object> index = new IsbnIndex<>();
+        for (Isbn isbn : isbns) {
+            index.put(isbn, VALUE);
+        }
+        long afterIndex = usedMemory();
+        System.out.printf("%d entries: HashMap<String> %d MB, IsbnIndex %d MB%n", entries,
+                (afterStringMap - before) >> 20, (afterIndex - afterStringMap) >> 20);
+
+        for (int round = 1; round <= rounds; round++) {
+            int hits = 0;
+            long start = System.nanoTime();
+            for (String text : texts) {
+                if (stringMap.get(new String(text)) != null) {
+                    hits++;
+                }
+            }
+            long stringKeyNanos = System.nanoTime() - start;
+            start = System.nanoTime();
+            for (Isbn isbn : isbns) {
+                if (index.get(isbn) != null) {
+                    hits++;
+                }
+            }
+            long isbnKeyNanos = System.nanoTime() - start;
+            start = System.nanoTime();
+            for (String text : texts) {
+                Isbn isbn = Isbn.tryParse(text);
+                if (isbn != null && index.get(isbn) != null) {
+                    hits++;
+                }
+            }
+            long parsedNanos = System.nanoTime() - start;
+            if (hits != 3 * entries) {
+                throw new IllegalStateException("Missing entries: " + hits);
+            }
+            System.out.printf("round %d: HashMap<String> %d ns/op, IsbnIndex %d ns/op, "
+                            + "IsbnIndex from text %d ns/op%n", round, stringKeyNanos / entries,
+                    isbnKeyNanos / entries, parsedNanos / entries);
+        }
+        // keep both maps reachable until the end so that neither is collected early
+        System.out.println("(" + stringMap.size() + " + " + index.size() + " entries)");
+    }
+
+    /**
+     * Returns the n-th of a series of distinct, scattered 978-prefixed ISBN-13s with valid
+     * check digits.
+     */
+    private static String isbn13(int n) {
+        // 7919 is coprime with 10^9, so the bodies are distinct for n below 10^9
+        String body = String.format("978%09d", (long) n * 7919 % 1_000_000_000);
+        int sum = 0;
+        for (int i = 0; i < 12; i++) {
+            int digit = body.charAt(i) - '0';
+            sum += i % 2 == 0 ? digit : 3 * digit;
+        }
+        return body + (10 - sum % 10) % 10;
+    }
+
+    private static long usedMemory() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
@@ -0,0 +1,503 @@
+package org.lab1;
+
+import java.sql.*;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Stores the catalog in the MariaDB {@code titles}, {@code authors} and {@code authorISBN} tables.
+ * <p>
+ * Connections come from a {@link DataSourceRouter}: loads run on a replica when one is
+ * healthy, while writes and point lookups use the primary. Each operation borrows a pooled
+ * connection for its own duration, so a connection dropped by the server only fails the
+ * operation that was using it.
+ * </p>
+ * <p>
+ * The {@code isbn} columns hold each ISBN in whichever form it was entered, while the
+ * application treats the ISBN-10 and ISBN-13 forms of a book as the same key. Lookups, updates
+ * and deletes therefore match either form, and a title is not inserted if it exists in the
+ * other form.
+ * </p>
+ */
+public class JdbcCatalogStorage implements CatalogStorage {
+    private static final int MAX_IN_LIST = 500;
+    private static final int ER_DUP_ENTRY = 1062;
+
+    private final DataSourceRouter router;
+
+    /**
+     * Constructs a JDBC backend that connects through the given router.
+     *
+     * @param router the router supplying primary and replica connections
+     */
+    public JdbcCatalogStorage(DataSourceRouter router) {
+        this.router = router;
+    }
+
+    /**
+     * Connects and brings the schema up to date with {@link CatalogMigrations} before anything
+     * is loaded.
+     */
+    @Override
+    public void open() throws StorageException {
+        try {
+            router.connect();
+        } catch (SQLException e) {
+            throw new StorageException("Could not connect to the database", e);
+        }
+        try (DataSourceRouter.Lease lease = router.acquireWrite()) {
+            new SchemaMigrator(CatalogMigrations.all()).migrate(lease.getConnection());
+        } catch (SQLException e) {
+            throw new StorageException("Could not migrate the database schema", e);
+        }
+    }
+
+    /**
+     * Loads all titles, authors and links from a single server.
+     * <p>
+     * The table scans run on a replica when one is healthy so that they do not compete
+     * with writes on the primary. Migrations only run on the primary, so a replica that has
+     * not yet received the {@code version} columns is not used; without them every book and
+     * author would be loaded at version 0 and their first update would be rejected as a
+     * conflict.
+     * </p>
+     */
+    @Override
+    public void load(Loader loader) throws StorageException {
+        try (DataSourceRouter.Lease lease = router.acquireRead()) {
+            if (hasVersionColumns(lease.getConnection())) {
+                load(lease.getConnection(), loader);
+                return;
+            }
+        } catch (SQLException e) {
+            throw new StorageException("Could not load the catalog", e);
+        }
+        System.err.println("Read replica has no version columns yet; loading the catalog from the primary");
+        try (DataSourceRouter.Lease lease = router.acquireWrite()) {
+            load(lease.getConnection(), loader);
+        } catch (SQLException e) {
+            throw new StorageException("Could not load the catalog", e);
+        }
+    }
+
+    /**
+     * Loads the titles, authors and links from the given connection.
+     *
+     * @param readConn the connection to read from
+     * @param loader   the receiver of the catalog
+     * @throws SQLException if a database access error occurs
+     */
+    private void load(Connection readConn, Loader loader) throws SQLException {
+        loadBooks(readConn, loader);
+        loadAuthors(readConn, loader);
+        loadRelationships(readConn, loader);
+    }
+
+    /**
+     * Checks whether the server has the {@code version} columns added by the optimistic
+     * locking migration.
+     *
+     * @param conn the connection to check
+     * @return true if both {@code titles} and {@code authors} have a {@code version} column
+     * @throws SQLException if a database access error occurs
+     */
+    private static boolean hasVersionColumns(Connection conn) throws SQLException {
+        String sql = "SELECT COUNT(*) FROM information_schema.COLUMNS "
+                + "WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME IN ('titles', 'authors') "
+                + "AND COLUMN_NAME = 'version'";
+        try (PreparedStatement ps = conn.prepareStatement(sql);
+             ResultSet rs = ps.executeQuery()) {
+            return rs.next() && rs.getInt(1) == 2;
+        }
+    }
+
+    /**
+     * Loads all books from the 'titles' table.
+     *
+     * @param readConn the connection to read from
+     * @param loader   the receiver of the books
+     * @throws SQLException if a database access error occurs
+     */
+    private void loadBooks(Connection readConn, Loader loader) throws SQLException {
+        String sql = "SELECT * FROM titles";
+        try (PreparedStatement ps = readConn.prepareStatement(sql);
+             ResultSet rs = ps.executeQuery()) {
+            while (rs.next()) {
+                String isbnText = rs.getString("isbn");
+                Isbn isbn = Isbn.tryParse(isbnText);
+                if (isbn == null) {
+                    System.err.println("Skipping title with invalid ISBN: " + isbnText);
+                    continue;
+                }
+                String title = rs.getString("title");
+                int editionNumber = rs.getInt("editionNumber");
+                String copyright = rs.getString("copyright");
+                Book book = new Book(isbn, title, editionNumber, copyright);
+                book.setVersion(rs.getInt("version"));
+                loader.book(book);
+            }
+        }
+    }
+
+    /**
+     * Loads all authors from the 'authors' table.
+     *
+     * @param readConn the connection to read from
+     * @param loader   the receiver of the authors
+     * @throws SQLException if a database access error occurs
+     */
+    private void loadAuthors(Connection readConn, Loader loader) throws SQLException {
+        String sql = "SELECT * FROM authors";
+        try (PreparedStatement ps = readConn.prepareStatement(sql);
+             ResultSet rs = ps.executeQuery()) {
+            while (rs.next()) {
+                int authorID = rs.getInt("authorID");
+                String firstName = rs.getString("firstName");
+                String lastName = rs.getString("lastName");
+                Author author = new Author(authorID, firstName, lastName);
+                author.setVersion(rs.getInt("version"));
+                loader.author(author);
+            }
+        }
+    }
+
+    /**
+     * Loads the relationships from the 'authorISBN' table.
+     *
+     * @param readConn the connection to read from
+     * @param loader   the receiver of the links
+     * @throws SQLException if a database access error occurs
+     */
+    private void loadRelationships(Connection readConn, Loader loader) throws SQLException {
+        String sql = "SELECT * FROM authorISBN";
+        try (PreparedStatement ps = readConn.prepareStatement(sql);
+             ResultSet rs = ps.executeQuery()) {
+            while (rs.next()) {
+                int authorID = rs.getInt("authorID");
+                Isbn isbn = Isbn.tryParse(rs.getString("isbn"));
+                if (isbn != null) {
+                    loader.link(authorID, isbn);
+                }
+            }
+        }
+    }
+
+    /**
+     * Reads a title from the primary so that a book written moments ago is visible even if
+     * replicas have not caught up.
+     */
+    @Override
+    public Book fetchBook(Isbn isbn) throws StorageException {
+        String sql = "SELECT * FROM titles WHERE isbn IN (?, ?)";
+        try (DataSourceRouter.Lease lease = router.acquireWrite();
+             PreparedStatement ps = lease.getConnection().prepareStatement(sql)) {
+            setIsbnForms(ps, 1, isbn);
+            try (ResultSet rs = ps.executeQuery()) {
+                Isbn key = rs.next() ? Isbn.tryParse(rs.getString("isbn")) : null;
+                if (key != null) {
+                    Book book = new Book(key, rs.getString("title"),
+                            rs.getInt("editionNumber"), rs.getString("copyright"));
+                    book.setVersion(rs.getInt("version"));
+                    return book;
+                }
+            }
+        } catch (SQLException e) {
+            throw new StorageException("Could not read title " + isbn, e);
+        }
+        return null;
+    }
+
+    /**
+     * Reads an author from the primary.
+     */
+    @Override
+    public Author fetchAuthor(int authorID) throws StorageException {
+        String sql = "SELECT * FROM authors WHERE authorID = ?";
+        try (DataSourceRouter.Lease lease = router.acquireWrite();
+             PreparedStatement ps = lease.getConnection().prepareStatement(sql)) {
+            ps.setInt(1, authorID);
+            try (ResultSet rs = ps.executeQuery()) {
+                if (rs.next()) {
+                    Author author = new Author(rs.getInt("authorID"), rs.getString("firstName"),
+                            rs.getString("lastName"));
+                    author.setVersion(rs.getInt("version"));
+                    return author;
+                }
+            }
+        } catch (SQLException e) {
+            throw new StorageException("Could not read author " + authorID, e);
+        }
+        return null;
+    }
+
+    /**
+     * Inserts the title and its authorISBN rows in one transaction, unless the title already
+     * exists in either ISBN form. The existence check locks the key range so that a concurrent
+     * insert of the other form waits for this transaction.
+     */
+    @Override
+    public boolean insertBook(Book book) throws StorageException {
+        String existsSql = "SELECT isbn FROM titles WHERE isbn IN (?, ?) FOR UPDATE";
+        String sql = "INSERT INTO titles (isbn, title, editionNumber, copyright) VALUES (?, ?, ?, ?)";
+        String linkSql = "INSERT INTO authorISBN (authorID, isbn) VALUES (?, ?)";
+        try (DataSourceRouter.Lease lease = router.acquireWrite()) {
+            Connection conn = lease.getConnection();
+            conn.setAutoCommit(false);
+            try (PreparedStatement exists = conn.prepareStatement(existsSql);
+                 PreparedStatement ps = conn.prepareStatement(sql);
+                 PreparedStatement links = conn.prepareStatement(linkSql)) {
+                setIsbnForms(exists, 1, book.getIsbnKey());
+                try (ResultSet rs = exists.executeQuery()) {
+                    if (rs.next()) {
+                        conn.rollback();
+                        return false;
+                    }
+                }
+                ps.setString(1, book.getIsbn());
+                ps.setString(2, book.getTitle());
+                ps.setInt(3, book.getEditionNumber());
+                ps.setString(4, book.getCopyright());
+                ps.executeUpdate();
+                for (Author author : book.getAuthorList()) {
+                    links.setInt(1, author.getAuthorID());
+                    links.setString(2, book.getIsbn());
+                    links.addBatch();
+                }
+                links.executeBatch();
+                conn.commit();
+                return true;
+            } catch (SQLIntegrityConstraintViolationException e) {
+                conn.rollback();
+                // a concurrent insert of the same ISBN; any other violation, such as an
+                // unknown author, is an error rather than a duplicate
+                if (e.getErrorCode() != ER_DUP_ENTRY) {
+                    throw e;
+                }
+                return false;
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            } finally {
+                conn.setAutoCommit(true);
+            }
+        } catch (SQLException e) {
+            throw new StorageException("Could not insert title " + book.getIsbn(), e);
+        }
+    }
+
+    @Override
+    public boolean insertAuthor(Author author) throws StorageException {
+        String sql = "INSERT INTO authors (firstName, lastName) VALUES (?, ?)";
+        try (DataSourceRouter.Lease lease = router.acquireWrite();
+             PreparedStatement ps = lease.getConnection().prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
+            ps.setString(1, author.getFirstName());
+            ps.setString(2, author.getLastName());
+            int rowsAffected = ps.executeUpdate();
+            if (rowsAffected > 0) {
+                try (ResultSet generatedKeys = ps.getGeneratedKeys()) {
+                    if (generatedKeys.next()) {
+                        author.setAuthorID(generatedKeys.getInt(1));
+                    }
+                }
+                return true;
+            }
+        } catch (SQLException e) {
+            throw new StorageException("Could not insert author", e);
+        }
+        return false;
+    }
+
+    /**
+     * Updates the title with a compare-and-set on its version column. If no row matches, a
+     * second query tells a missing title apart from a conflicting update.
+     */
+    @Override
+    public boolean updateBook(Book book) throws StorageException {
+        String sql = "UPDATE titles SET title = ?, editionNumber = ?, copyright = ?, version = version + 1 "
+                + "WHERE isbn IN (?, ?) AND version = ?";
+        try (DataSourceRouter.Lease lease = router.acquireWrite();
+             PreparedStatement ps = lease.getConnection().prepareStatement(sql)) {
+            ps.setString(1, book.getTitle());
+            ps.setInt(2, book.getEditionNumber());
+            ps.setString(3, book.getCopyright());
+            setIsbnForms(ps, 4, book.getIsbnKey());
+            ps.setInt(6, book.getVersion());
+            // relationships are assumed to be maintained by the application
+            if (ps.executeUpdate() > 0) {
+                book.setVersion(book.getVersion() + 1);
+                return true;
+            }
+        } catch (SQLException e) {
+            throw new StorageException("Could not update title " + book.getIsbn(), e);
+        }
+        if (fetchBook(book.getIsbnKey()) == null) {
+            return false;
+        }
+        throw new VersionConflictException("Title " + book.getIsbn() + " was changed by another user");
+    }
+
+    /**
+     * Updates the author with a compare-and-set on its version column, like
+     * {@link #updateBook(Book)}.
+     */
+    @Override
+    public boolean updateAuthor(Author author) throws StorageException {
+        String sql = "UPDATE authors SET firstName = ?, lastName = ?, version = version + 1 "
+                + "WHERE authorID = ? AND version = ?";
+        try (DataSourceRouter.Lease lease = router.acquireWrite();
+             PreparedStatement ps = lease.getConnection().prepareStatement(sql)) {
+            ps.setString(1, author.getFirstName());
+            ps.setString(2, author.getLastName());
+            ps.setInt(3, author.getAuthorID());
+            ps.setInt(4, author.getVersion());
+            if (ps.executeUpdate() > 0) {
+                author.setVersion(author.getVersion() + 1);
+                return true;
+            }
+        } catch (SQLException e) {
+            throw new StorageException("Could not update author " + author.getAuthorID(), e);
+        }
+        if (fetchAuthor(author.getAuthorID()) == null) {
+            return false;
+        }
+        throw new VersionConflictException("Author " + author.getAuthorID() + " was changed by another user");
+    }
+
+    /**
+     * Applies the link diff as one DELETE batch and one INSERT batch in a single transaction.
+     * Adding a link that already exists does nothing, while the foreign keys still reject an
+     * unknown author or title.
+     */
+    @Override
+    public void updateLinks(Isbn isbn, Collection<Integer> addAuthorIDs, Collection<Integer> removeAuthorIDs)
+            throws StorageException {
+        String deleteSql = "DELETE FROM authorISBN WHERE authorID = ? AND isbn = ?";
+        String insertSql = "INSERT INTO authorISBN (authorID, isbn) VALUES (?, ?) "
+                + "ON DUPLICATE KEY UPDATE authorID = authorID";
+        try (DataSourceRouter.Lease lease = router.acquireWrite()) {
+            Connection conn = lease.getConnection();
+            conn.setAutoCommit(false);
+            try (PreparedStatement delete = conn.prepareStatement(deleteSql);
+                 PreparedStatement insert = conn.prepareStatement(insertSql)) {
+                for (int authorID : removeAuthorIDs) {
+                    delete.setInt(1, authorID);
+                    delete.setString(2, isbn.toString());
+                    delete.addBatch();
+                }
+                for (int authorID : addAuthorIDs) {
+                    insert.setInt(1, authorID);
+                    insert.setString(2, isbn.toString());
+                    insert.addBatch();
+                }
+                delete.executeBatch();
+                insert.executeBatch();
+                conn.commit();
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            } finally {
+                conn.setAutoCommit(true);
+            }
+        } catch (SQLException e) {
+            throw new StorageException("Could not update the authors of " + isbn, e);
+        }
+    }
+
+    /**
+     * Deletes the links and then the titles with set-based {@code IN} statements, in chunks of
+     * {@value #MAX_IN_LIST} keys, in a single transaction.
+     */
+    @Override
+    public int deleteBooks(Collection<Isbn> isbns) throws StorageException {
+        Set<String> keys = new LinkedHashSet<>();
+        for (Isbn isbn : isbns) {
+            keys.add(isbn.toIsbn13());
+            if (isbn.toIsbn10() != null) {
+                keys.add(isbn.toIsbn10());
+            }
+        }
+        try {
+            return deleteCascading(new ArrayList<>(keys), "authorISBN", "titles", "isbn");
+        } catch (SQLException e) {
+            throw new StorageException("Could not delete " + isbns.size() + " titles", e);
+        }
+    }
+
+    /**
+     * Deletes the links and then the authors with set-based {@code IN} statements, in chunks of
+     * {@value #MAX_IN_LIST} keys, in a single transaction.
+     */
+    @Override
+    public int deleteAuthors(Collection<Integer> authorIDs) throws StorageException {
+        try {
+            return deleteCascading(new ArrayList<>(authorIDs), "authorISBN", "authors", "authorID");
+        } catch (SQLException e) {
+            throw new StorageException("Could not delete " + authorIDs.size() + " authors", e);
+        }
+    }
+
+    /**
+     * Deletes rows from a link table and then from its parent table by key, in one transaction.
+     *
+     * @param keys        the key values to delete
+     * @param linkTable   the table whose rows reference the parent
+     * @param parentTable the table to delete from
+     * @param keyColumn   the key column shared by both tables
+     * @return the number of parent rows deleted
+     * @throws SQLException if a database access error occurs; nothing is deleted in that case
+     */
+    private int deleteCascading(List<?> keys, String linkTable, String parentTable, String keyColumn)
+            throws SQLException {
+        int deleted = 0;
+        try (DataSourceRouter.Lease lease = router.acquireWrite()) {
+            Connection conn = lease.getConnection();
+            conn.setAutoCommit(false);
+            try {
+                for (int from = 0; from < keys.size(); from += MAX_IN_LIST) {
+                    List<?> chunk = keys.subList(from, Math.min(keys.size(), from + MAX_IN_LIST));
+                    String in = " WHERE " + keyColumn + " IN (" + String.join(",", Collections.nCopies(chunk.size(), "?")) + ")";
+                    try (PreparedStatement links = conn.prepareStatement("DELETE FROM " + linkTable + in);
+                         PreparedStatement parents = conn.prepareStatement("DELETE FROM " + parentTable + in)) {
+                        for (int i = 0; i < chunk.size(); i++) {
+                            links.setObject(i + 1, chunk.get(i));
+                            parents.setObject(i + 1, chunk.get(i));
+                        }
+                        links.executeUpdate();
+                        deleted += parents.executeUpdate();
+                    }
+                }
+                conn.commit();
+                return deleted;
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            } finally {
+                conn.setAutoCommit(true);
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        router.close();
+    }
+
+    /**
+     * Binds the ISBN-13 and ISBN-10 forms of an ISBN to two consecutive parameters of an
+     * {@code isbn IN (?, ?)} condition. An ISBN without an ISBN-10 form is bound twice.
+     *
+     * @param ps    the statement
+     * @param index the index of the first of the two parameters
+     * @param isbn  the ISBN
+     * @throws SQLException if a parameter cannot be set
+     */
+    private static void setIsbnForms(PreparedStatement ps, int index, Isbn isbn) throws SQLException {
+        String isbn10 = isbn.toIsbn10();
+        ps.setString(index, isbn.toIsbn13());
+        ps.setString(index + 1, isbn10 != null ? isbn10 : isbn.toIsbn13());
+    }
+}
@@ -0,0 +1,912 @@
+package org.lab1;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.file.*;
+import java.util.*;
+import java.util.zip.CRC32;
+
+/**
+ * An embedded catalog backend that needs no database server.
+ * <p>
+ * Every change is appended to a single log file as a checksummed record, and the current
+ * titles, authors and links are kept in an in-memory index built from that log. On restart
+ * the log is replayed to rebuild the index; a record that is cut short or fails its checksum
+ * marks the end of the last complete write, and the file is truncated there. A record that
+ * passes its checksum but cannot be decoded is not a torn write, so opening fails instead.
+ * </p>
+ * <p>
+ * Only one process may use a log directory at a time. {@link #open()} takes an exclusive lock
+ * on a separate lock file, which is kept across compactions, and fails if another process
+ * already holds it.
+ * </p>
+ * <p>
+ * Writes use group commit: callers append their records to a shared buffer and wait, while a
+ * single writer thread flushes everything buffered so far with one write and one
+ * {@code fsync}, then releases all of the waiting callers together. The same thread compacts
+ * the log periodically, once superseded records outnumber live ones, by writing the live
+ * index to a new file and atomically renaming it over the old log. Only copying the index
+ * happens under the lock; the new file is encoded, written and synced while other callers
+ * carry on.
+ * </p>
+ * <p>
+ * Record layout: {@code int length, int crc32, byte type, payload}, where the length and
+ * checksum cover the type and payload. A change that needs several records (such as a title
+ * and its author links) is written as one {@code BATCH} record so that it is applied
+ * completely or not at all.
+ * </p>
+ * <p>
+ * {@code BOOK} and {@code AUTHOR} records carry the version number used for optimistic
+ * locking. Because the version check and the append happen under the same lock, concurrent
+ * updates of one row are serialized and every one after the first with the same version is
+ * rejected.
+ * </p>
+ */
+public class LogCatalogStorage implements CatalogStorage {
+    private static final String LOG_FILE = "catalog.log";
+    private static final String COMPACT_FILE = "catalog.log.compact";
+    private static final String LOCK_FILE = "catalog.lock";
+    private static final byte BATCH = 0;
+    private static final byte BOOK = 1;
+    private static final byte AUTHOR = 2;
+    private static final byte LINK = 3;
+    private static final byte UNLINK = 4;
+    private static final byte DELETE_BOOK = 5;
+    private static final byte DELETE_AUTHOR = 6;
+    private static final byte AUTHOR_SEQUENCE = 7;
+    private static final int HEADER_BYTES = 8;
+    private static final int MAX_RECORD_BYTES = 16 << 20;
+    private static final long MIN_DEAD_RECORDS_TO_COMPACT = 1024;
+
+    private final Path logFile;
+    private final Path compactFile;
+    private final Path lockFile;
+    private final long compactionIntervalMillis;
+    private final Object lock = new Object();
+
+    // in-memory index, guarded by lock
+    private final Map<Long, Book> titles = new LinkedHashMap<>();
+    private final Map<Integer, Author> authors = new LinkedHashMap<>();
+    private final Map<Long, Set<Integer>> links = new LinkedHashMap<>();
+    private final Map<Integer, Set<Long>> linksByAuthor = new HashMap<>();
+    private int linkCount;
+    private int nextAuthorID = 1;
+    private long logRecords;
+
+    // group commit state, guarded by lock
+    private ByteArrayOutputStream pending = new ByteArrayOutputStream();
+    private long appendedSeq;
+    private long durableSeq;
+    private IOException failure;
+    private boolean closed;
+    private FileChannel channel;
+    private FileChannel lockChannel;
+    private FileLock fileLock;
+    private Thread writer;
+
+    /**
+     * Constructs a log backend in the given directory that checks for compaction every minute.
+     *
+     * @param directory the directory holding the log file
+     */
+    public LogCatalogStorage(Path directory) {
+        this(directory, 60_000);
+    }
+
+    /**
+     * Constructs a log backend in the given directory.
+     *
+     * @param directory                the directory holding the log file
+     * @param compactionIntervalMillis how often the writer thread checks whether to compact
+     */
+    public LogCatalogStorage(Path directory, long compactionIntervalMillis) {
+        this.logFile = directory.resolve(LOG_FILE);
+        this.compactFile = directory.resolve(COMPACT_FILE);
+        this.lockFile = directory.resolve(LOCK_FILE);
+        this.compactionIntervalMillis = compactionIntervalMillis;
+    }
+
+    /**
+     * Locks the log directory, replays the log into the index, truncates any torn tail and
+     * starts the writer thread. A backend can only be opened once; if opening fails, nothing
+     * is left open and it may be tried again.
+     *
+     * @throws StorageException if this backend is already open or closed, another process is
+     *                          using the directory, or the log cannot be read or contains a
+     *                          record that cannot be decoded
+     */
+    @Override
+    public void open() throws StorageException {
+        synchronized (lock) {
+            if (lockChannel != null || closed) {
+                // the files belong to the earlier open, so leave them alone
+                throw new StorageException(logFile.getParent() + " is already open or closed in this backend");
+            }
+            try {
+                Files.createDirectories(logFile.getParent());
+                lockDirectory();
+                // a leftover compaction file never replaced the log, so the log is still complete
+                Files.deleteIfExists(compactFile);
+                channel = FileChannel.open(logFile, StandardOpenOption.CREATE,
+                        StandardOpenOption.READ, StandardOpenOption.WRITE);
+                recover();
+            } catch (IOException e) {
+                closeFiles();
+                throw new StorageException("Could not open " + logFile, e);
+            } catch (StorageException e) {
+                closeFiles();
+                throw e;
+            }
+            writer = new Thread(this::writeLoop, "catalog-log-writer");
+            writer.setDaemon(true);
+            writer.start();
+        }
+    }
+
+    /**
+     * Takes an exclusive lock on the lock file, which is held until {@link #close()}.
+     *
+     * @throws IOException      if the lock file cannot be opened
+     * @throws StorageException if the lock is held by another process or by another backend
+     *                          in this process
+     */
+    private void lockDirectory() throws IOException, StorageException {
+        FileChannel candidate = FileChannel.open(lockFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        FileLock acquired;
+        try {
+            acquired = candidate.tryLock();
+        } catch (OverlappingFileLockException e) {
+            acquired = null;
+        } catch (IOException e) {
+            candidate.close();
+            throw e;
+        }
+        if (acquired == null) {
+            candidate.close();
+            throw new StorageException(logFile.getParent() + " is in use by another process");
+        }
+        lockChannel = candidate;
+        fileLock = acquired;
+    }
+
+    /**
+     * Replays every complete record in the log and truncates the file after the last one.
+     *
+     * @throws IOException      if the log cannot be read or truncated
+     * @throws StorageException if a record passes its checksum but cannot be decoded
+     */
+    private void recover() throws IOException, StorageException {
+        long size = channel.size();
+        long validEnd = 0;
+        DataInputStream in = new DataInputStream(new BufferedInputStream(
+                Channels.newInputStream(channel.position(0))));
+        while (validEnd + HEADER_BYTES <= size) {
+            int length = in.readInt();
+            int crc = in.readInt();
+            if (length < 1 || length > MAX_RECORD_BYTES || validEnd + HEADER_BYTES + length > size) {
+                break;
+            }
+            byte[] body = new byte[length];
+            in.readFully(body);
+            if (checksum(body) != crc) {
+                break;
+            }
+            try {
+                apply(new DataInputStream(new ByteArrayInputStream(body)));
+            } catch (IOException | RuntimeException e) {
+                throw new StorageException("Malformed record at offset " + validEnd + " in " + logFile
+                        + "; the log was written by a newer version or is damaged", e);
+            }
+            logRecords++;
+            validEnd += HEADER_BYTES + length;
+        }
+        if (validEnd < size) {
+            System.err.println("Discarding " + (size - validEnd) + " bytes of incomplete log at offset "
+                    + validEnd + " in " + logFile);
+            channel.truncate(validEnd);
+            channel.force(true);
+        }
+        channel.position(validEnd);
+    }
+
+    @Override
+    public void load(Loader loader) throws StorageException {
+        synchronized (lock) {
+            checkOpen();
+            for (Book book : titles.values()) {
+                loader.book(copyOf(book));
+            }
+            for (Author author : authors.values()) {
+                loader.author(copyOf(author));
+            }
+            for (Map.Entry<Long, Set<Integer>> entry : links.entrySet()) {
+                Isbn isbn = titles.get(entry.getKey()).getIsbnKey();
+                for (int authorID : entry.getValue()) {
+                    loader.link(authorID, isbn);
+                }
+            }
+        }
+    }
+
+    @Override
+    public Book fetchBook(Isbn isbn) throws StorageException {
+        synchronized (lock) {
+            checkOpen();
+            Book book = titles.get(isbn.key());
+            return book == null ? null : copyOf(book);
+        }
+    }
+
+    @Override
+    public Author fetchAuthor(int authorID) throws StorageException {
+        synchronized (lock) {
+            checkOpen();
+            Author author = authors.get(authorID);
+            return author == null ? null : copyOf(author);
+        }
+    }
+
+    /**
+     * Stores the title and its links as one atomic batch record.
+     */
+    @Override
+    public boolean insertBook(Book book) throws StorageException {
+        long seq;
+        synchronized (lock) {
+            checkOpen();
+            Isbn isbn = book.getIsbnKey();
+            if (titles.containsKey(isbn.key())) {
+                return false;
+            }
+            List<byte[]> records = new ArrayList<>();
+            records.add(encodeBook(book, 0));
+            for (Author author : book.getAuthorList()) {
+                checkAuthorExists(author.getAuthorID());
+                records.add(encodeKeyed(LINK, author.getAuthorID(), isbn));
+            }
+            seq = append(records);
+        }
+        awaitDurable(seq);
+        return true;
+    }
+
+    @Override
+    public boolean insertAuthor(Author author) throws StorageException {
+        long seq;
+        synchronized (lock) {
+            checkOpen();
+            int authorID = nextAuthorID;
+            seq = append(List.of(encodeAuthor(authorID, author, 0)));
+            author.setAuthorID(authorID);
+        }
+        awaitDurable(seq);
+        return true;
+    }
+
+    @Override
+    public boolean updateBook(Book book) throws StorageException {
+        long seq;
+        synchronized (lock) {
+            checkOpen();
+            Book stored = titles.get(book.getIsbnKey().key());
+            if (stored == null) {
+                return false;
+            }
+            if (stored.getVersion() != book.getVersion()) {
+                throw new VersionConflictException("Title " + book.getIsbn() + " was changed by another user");
+            }
+            seq = append(List.of(encodeBook(book, book.getVersion() + 1)));
+            book.setVersion(book.getVersion() + 1);
+        }
+        awaitDurable(seq);
+        return true;
+    }
+
+    @Override
+    public boolean updateAuthor(Author author) throws StorageException {
+        long seq;
+        synchronized (lock) {
+            checkOpen();
+            Author stored = authors.get(author.getAuthorID());
+            if (stored == null) {
+                return false;
+            }
+            if (stored.getVersion() != author.getVersion()) {
+                throw new VersionConflictException("Author " + author.getAuthorID()
+                        + " was changed by another user");
+            }
+            seq = append(List.of(encodeAuthor(author.getAuthorID(), author, author.getVersion() + 1)));
+            author.setVersion(author.getVersion() + 1);
+        }
+        awaitDurable(seq);
+        return true;
+    }
+
+    /**
+     * Writes the link diff as one atomic batch of LINK and UNLINK records. Like the foreign
+     * keys of the JDBC backend, this rejects links to an unknown title or author, but removing
+     * links from a title that does not exist does nothing.
+     */
+    @Override
+    public void updateLinks(Isbn isbn, Collection<Integer> addAuthorIDs, Collection<Integer> removeAuthorIDs)
+            throws StorageException {
+        long seq;
+        synchronized (lock) {
+            checkOpen();
+            if (!addAuthorIDs.isEmpty() && !titles.containsKey(isbn.key())) {
+                throw new StorageException("No title with ISBN " + isbn);
+            }
+            List<byte[]> records = new ArrayList<>();
+            for (int authorID : removeAuthorIDs) {
+                records.add(encodeKeyed(UNLINK, authorID, isbn));
+            }
+            for (int authorID : addAuthorIDs) {
+                checkAuthorExists(authorID);
+                records.add(encodeKeyed(LINK, authorID, isbn));
+            }
+            if (records.isEmpty()) {
+                return;
+            }
+            seq = append(records);
+        }
+        awaitDurable(seq);
+    }
+
+    /**
+     * Writes one DELETE_BOOK record per existing title as an atomic batch; replaying a
+     * DELETE_BOOK also drops the title's links.
+     */
+    @Override
+    public int deleteBooks(Collection<Isbn> isbns) throws StorageException {
+        long seq;
+        List<byte[]> records = new ArrayList<>();
+        synchronized (lock) {
+            checkOpen();
+            Set<Long> seen = new HashSet<>();
+            for (Isbn isbn : isbns) {
+                if (titles.containsKey(isbn.key()) && seen.add(isbn.key())) {
+                    records.add(encode(out -> {
+                        out.writeByte(DELETE_BOOK);
+                        out.writeLong(isbn.pack());
+                    }));
+                }
+            }
+            if (records.isEmpty()) {
+                return 0;
+            }
+            seq = append(records);
+        }
+        awaitDurable(seq);
+        return records.size();
+    }
+
+    /**
+     * Writes one DELETE_AUTHOR record per existing author as an atomic batch; replaying a
+     * DELETE_AUTHOR also drops the author's links.
+     */
+    @Override
+    public int deleteAuthors(Collection<Integer> authorIDs) throws StorageException {
+        long seq;
+        List<byte[]> records = new ArrayList<>();
+        synchronized (lock) {
+            checkOpen();
+            for (int authorID : new LinkedHashSet<>(authorIDs)) {
+                if (authors.containsKey(authorID)) {
+                    records.add(encode(out -> {
+                        out.writeByte(DELETE_AUTHOR);
+                        out.writeInt(authorID);
+                    }));
+                }
+            }
+            if (records.isEmpty()) {
+                return 0;
+            }
+            seq = append(records);
+        }
+        awaitDurable(seq);
+        return records.size();
+    }
+
+    /**
+     * Flushes any buffered writes, stops the writer thread and closes the log.
+     */
+    @Override
+    public void close() {
+        Thread writerThread;
+        synchronized (lock) {
+            closed = true;
+            lock.notifyAll();
+            writerThread = writer;
+            writer = null;
+        }
+        if (writerThread != null) {
+            try {
+                writerThread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        synchronized (lock) {
+            closeFiles();
+        }
+    }
+
+    /**
+     * Closes the log and releases the directory lock, if they are open.
+     */
+    private void closeFiles() {
+        try {
+            if (channel != null) {
+                channel.close();
+                channel = null;
+            }
+            if (lockChannel != null) {
+                // closing the channel also releases the lock
+                lockChannel.close();
+                lockChannel = null;
+                fileLock = null;
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    ////////// Group commit //////////
+
+    /**
+     * Applies the records to the index and buffers them for the writer thread.
+     * Must be called while holding the lock.
+     *
+     * @param records the encoded records making up one change
+     * @return the sequence number to pass to {@link #awaitDurable(long)}
+     */
+    private long append(List<byte[]> records) {
+        byte[] body = records.size() == 1 ? records.get(0) : encodeBatch(records);
+        apply(body);
+        frame(body, pending);
+        logRecords++;
+        lock.notifyAll();
+        return ++appendedSeq;
+    }
+
+    /**
+     * Waits until the writer thread has made the given append durable.
+     *
+     * @param seq the sequence number returned by {@link #append(List)}
+     * @throws StorageException if the log could not be written
+     */
+    private void awaitDurable(long seq) throws StorageException {
+        synchronized (lock) {
+            try {
+                while (durableSeq < seq && failure == null) {
+                    lock.wait();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new StorageException("Interrupted while waiting for the log write", e);
+            }
+            if (durableSeq < seq) {
+                throw new StorageException("Could not write " + logFile, failure);
+            }
+        }
+    }
+
+    /**
+     * Body of the writer thread: flushes buffered records in groups and compacts when due.
+     */
+    private void writeLoop() {
+        long lastCompactionCheck = System.currentTimeMillis();
+        try {
+            while (true) {
+                byte[] batch = null;
+                long batchSeq = 0;
+                Snapshot snapshot = null;
+                synchronized (lock) {
+                    while (pending.size() == 0 && !closed) {
+                        long wait = lastCompactionCheck + compactionIntervalMillis - System.currentTimeMillis();
+                        if (wait <= 0) {
+                            break;
+                        }
+                        lock.wait(wait);
+                    }
+                    if (System.currentTimeMillis() - lastCompactionCheck >= compactionIntervalMillis) {
+                        lastCompactionCheck = System.currentTimeMillis();
+                        if (shouldCompact()) {
+                            snapshot = snapshot();
+                        }
+                    }
+                    if (snapshot == null) {
+                        if (pending.size() == 0) {
+                            if (closed) {
+                                return;
+                            }
+                            continue;
+                        }
+                        batch = pending.toByteArray();
+                        pending.reset();
+                        batchSeq = appendedSeq;
+                    }
+                }
+                if (snapshot != null) {
+                    compact(snapshot);
+                    continue;
+                }
+                ByteBuffer buffer = ByteBuffer.wrap(batch);
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+                channel.force(false);
+                synchronized (lock) {
+                    durableSeq = batchSeq;
+                    lock.notifyAll();
+                }
+            }
+        } catch (IOException e) {
+            synchronized (lock) {
+                failure = e;
+                closed = true;
+                lock.notifyAll();
+            }
+            e.printStackTrace();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Returns whether superseded records make up enough of the log to be worth rewriting.
+     */
+    private boolean shouldCompact() {
+        long live = titles.size() + authors.size() + linkCount;
+        long dead = logRecords - live;
+        return dead >= MIN_DEAD_RECORDS_TO_COMPACT && dead > live;
+    }
+
+    /**
+     * Copies the live index for compaction. Must be called while holding the lock.
+     * <p>
+     * Only references are copied: the index replaces its Book and Author objects on every
+     * change instead of modifying them, so the copies can be encoded after the lock is
+     * released. The index already includes the records still buffered for writing, so the
+     * buffer is dropped: those records are made durable by the new file, and their callers are
+     * released once it has replaced the old log. Records appended after this point are
+     * buffered as usual and written to the new log.
+     * </p>
+     *
+     * @return the snapshot to pass to {@link #compact(Snapshot)}
+     */
+    private Snapshot snapshot() {
+        Isbn[] linkIsbns = new Isbn[linkCount];
+        int[] linkAuthors = new int[linkCount];
+        int i = 0;
+        for (Map.Entry<Long, Set<Integer>> entry : links.entrySet()) {
+            Isbn isbn = titles.get(entry.getKey()).getIsbnKey();
+            for (int authorID : entry.getValue()) {
+                linkIsbns[i] = isbn;
+                linkAuthors[i] = authorID;
+                i++;
+            }
+        }
+        pending.reset();
+        return new Snapshot(nextAuthorID, new ArrayList<>(titles.values()), new ArrayList<>(authors.values()),
+                linkIsbns, linkAuthors, appendedSeq, logRecords);
+    }
+
+    /**
+     * Writes a snapshot to a new file and atomically renames it over the log.
+     * <p>
+     * Runs on the writer thread without holding the lock, so other callers can read and append
+     * meanwhile. The callers covered by the snapshot are only released after the new file and
+     * the rename have both been synced, so a power failure cannot bring back the old log
+     * without their writes.
+     * </p>
+     *
+     * @param snapshot the live index, from {@link #snapshot()}
+     * @throws IOException if the new log cannot be written
+     */
+    private void compact(Snapshot snapshot) throws IOException {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        // keep IDs of deleted authors from being handed out again
+        frame(encode(record -> {
+            record.writeByte(AUTHOR_SEQUENCE);
+            record.writeInt(snapshot.nextAuthorID);
+        }), buffer);
+        for (Book book : snapshot.books) {
+            frame(encodeBook(book, book.getVersion()), buffer);
+        }
+        for (Author author : snapshot.authors) {
+            frame(encodeAuthor(author.getAuthorID(), author, author.getVersion()), buffer);
+        }
+        for (int i = 0; i < snapshot.linkAuthors.length; i++) {
+            frame(encodeKeyed(LINK, snapshot.linkAuthors[i], snapshot.linkIsbns[i]), buffer);
+        }
+        long live = 1 + snapshot.books.size() + snapshot.authors.size() + snapshot.linkAuthors.length;
+        try (FileChannel out = FileChannel.open(compactFile, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            ByteBuffer bytes = ByteBuffer.wrap(buffer.toByteArray());
+            while (bytes.hasRemaining()) {
+                out.write(bytes);
+            }
+            out.force(true);
+        }
+        // only the writer thread uses the channel, so it can be swapped outside the lock
+        channel.close();
+        Files.move(compactFile, logFile, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        forceDirectory();
+        FileChannel compacted = FileChannel.open(logFile, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        compacted.position(compacted.size());
+        synchronized (lock) {
+            channel = compacted;
+            logRecords = live + (logRecords - snapshot.logRecords);
+            durableSeq = Math.max(durableSeq, snapshot.seq);
+            lock.notifyAll();
+        }
+    }
+
+    /**
+     * Syncs the directory holding the log, so that a rename of the log survives a power
+     * failure. Where a directory cannot be opened as a channel (Windows), the file system
+     * journals the rename itself and this does nothing.
+     *
+     * @throws IOException if the directory cannot be synced
+     */
+    private void forceDirectory() throws IOException {
+        FileChannel directory;
+        try {
+            directory = FileChannel.open(logFile.getParent(), StandardOpenOption.READ);
+        } catch (AccessDeniedException e) {
+            return;
+        }
+        try (FileChannel opened = directory) {
+            opened.force(true);
+        }
+    }
+
+    /**
+     * A copy of the live index, taken under the lock for the writer thread to write out.
+     */
+    private static class Snapshot {
+        private final int nextAuthorID;
+        private final List<Book> books;
+        private final List<Author> authors;
+        private final Isbn[] linkIsbns;
+        private final int[] linkAuthors;
+        private final long seq;
+        private final long logRecords;
+
+        /**
+         * Constructs a snapshot.
+         *
+         * @param nextAuthorID the next author ID to hand out
+         * @param books        the live titles
+         * @param authors      the live authors
+         * @param linkIsbns    the title of each live link
+         * @param linkAuthors  the author of each live link
+         * @param seq          the last append covered by the snapshot
+         * @param logRecords   the number of records appended to the old log when it was taken
+         */
+        Snapshot(int nextAuthorID, List<Book> books, List<Author> authors, Isbn[] linkIsbns,
+                 int[] linkAuthors, long seq, long logRecords) {
+            this.nextAuthorID = nextAuthorID;
+            this.books = books;
+            this.authors = authors;
+            this.linkIsbns = linkIsbns;
+            this.linkAuthors = linkAuthors;
+            this.seq = seq;
+            this.logRecords = logRecords;
+        }
+    }
+
+    ////////// Records //////////
+
+    /**
+     * Applies one record to the in-memory index. Used both when replaying the log and when
+     * appending, so the index always matches what the log would rebuild.
+     *
+     * @param body the record type and payload
+     */
+    private void apply(byte[] body) {
+        try {
+            apply(new DataInputStream(new ByteArrayInputStream(body)));
+        } catch (IOException e) {
+            // the body passed its checksum, so this is a bug rather than a damaged log
+            throw new IllegalStateException("Malformed log record", e);
+        }
+    }
+
+    private void apply(DataInputStream in) throws IOException {
+        byte type = in.readByte();
+        switch (type) {
+            case BATCH:
+                int count = in.readInt();
+                for (int i = 0; i < count; i++) {
+                    apply(in);
+                }
+                break;
+            case BOOK:
+                Isbn isbn = Isbn.unpack(in.readLong());
+                Book book = new Book(isbn, in.readUTF(), in.readInt(), in.readUTF());
+                book.setVersion(in.readInt());
+                titles.put(isbn.key(), book);
+                break;
+            case AUTHOR:
+                int authorID = in.readInt();
+                Author author = new Author(authorID, in.readUTF(), in.readUTF());
+                author.setVersion(in.readInt());
+                authors.put(authorID, author);
+                nextAuthorID = Math.max(nextAuthorID, authorID + 1);
+                break;
+            case LINK:
+                int linkedAuthor = in.readInt();
+                long linkedKey = Isbn.unpack(in.readLong()).key();
+                if (links.computeIfAbsent(linkedKey, k -> new LinkedHashSet<>()).add(linkedAuthor)) {
+                    linksByAuthor.computeIfAbsent(linkedAuthor, k -> new HashSet<>()).add(linkedKey);
+                    linkCount++;
+                }
+                break;
+            case UNLINK:
+                int unlinkedAuthor = in.readInt();
+                long unlinkedKey = Isbn.unpack(in.readLong()).key();
+                if (removeLink(unlinkedAuthor, unlinkedKey)) {
+                    removeFromReverse(linksByAuthor, unlinkedAuthor, unlinkedKey);
+                }
+                break;
+            case DELETE_BOOK:
+                long deletedKey = Isbn.unpack(in.readLong()).key();
+                titles.remove(deletedKey);
+                Set<Integer> bookLinks = links.remove(deletedKey);
+                if (bookLinks != null) {
+                    for (int authorOfBook : bookLinks) {
+                        removeFromReverse(linksByAuthor, authorOfBook, deletedKey);
+                    }
+                    linkCount -= bookLinks.size();
+                }
+                break;
+            case DELETE_AUTHOR:
+                int deletedAuthor = in.readInt();
+                authors.remove(deletedAuthor);
+                Set<Long> authorLinks = linksByAuthor.remove(deletedAuthor);
+                if (authorLinks != null) {
+                    for (long bookOfAuthor : authorLinks) {
+                        removeLink(deletedAuthor, bookOfAuthor);
+                    }
+                }
+                break;
+            case AUTHOR_SEQUENCE:
+                nextAuthorID = Math.max(nextAuthorID, in.readInt());
+                break;
+            default:
+                throw new IOException("Unknown record type " + type);
+        }
+    }
+
+    private static byte[] encodeBook(Book book, int version) {
+        return encode(out -> {
+            out.writeByte(BOOK);
+            out.writeLong(book.getIsbnKey().pack());
+            out.writeUTF(book.getTitle());
+            out.writeInt(book.getEditionNumber());
+            out.writeUTF(book.getCopyright());
+            out.writeInt(version);
+        });
+    }
+
+    private static byte[] encodeAuthor(int authorID, Author author, int version) {
+        return encode(out -> {
+            out.writeByte(AUTHOR);
+            out.writeInt(authorID);
+            out.writeUTF(author.getFirstName());
+            out.writeUTF(author.getLastName());
+            out.writeInt(version);
+        });
+    }
+
+    /**
+     * Encodes a LINK or UNLINK record.
+     */
+    private static byte[] encodeKeyed(byte type, int authorID, Isbn isbn) {
+        return encode(out -> {
+            out.writeByte(type);
+            out.writeInt(authorID);
+            out.writeLong(isbn.pack());
+        });
+    }
+
+    /**
+     * Wraps several records into one so that they are checksummed and replayed as a unit.
+     */
+    private static byte[] encodeBatch(List<byte[]> records) {
+        return encode(out -> {
+            out.writeByte(BATCH);
+            out.writeInt(records.size());
+            for (byte[] record : records) {
+                out.write(record);
+            }
+        });
+    }
+
+    private interface RecordWriter {
+        void write(DataOutputStream out) throws IOException;
+    }
+
+    private static byte[] encode(RecordWriter writer) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            writer.write(out);
+        } catch (IOException e) {
+            // writing to a byte array cannot fail
+            throw new UncheckedIOException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Writes the length and checksum header followed by the record body.
+     */
+    private static void frame(byte[] body, ByteArrayOutputStream out) {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+        header.putInt(body.length).putInt(checksum(body));
+        out.write(header.array(), 0, HEADER_BYTES);
+        out.write(body, 0, body.length);
+    }
+
+    private static int checksum(byte[] body) {
+        CRC32 crc = new CRC32();
+        crc.update(body);
+        return (int) crc.getValue();
+    }
+
+    ////////// Helpers //////////
+
+    /**
+     * Removes a link from the ISBN-side index only.
+     *
+     * @return true if the link existed
+     */
+    private boolean removeLink(int authorID, long isbnKey) {
+        Set<Integer> authorIDs = links.get(isbnKey);
+        if (authorIDs == null || !authorIDs.remove(authorID)) {
+            return false;
+        }
+        if (authorIDs.isEmpty()) {
+            links.remove(isbnKey);
+        }
+        linkCount--;
+        return true;
+    }
+
+    private static void removeFromReverse(Map<Integer, Set<Long>> reverse, int authorID, long isbnKey) {
+        Set<Long> isbnKeys = reverse.get(authorID);
+        if (isbnKeys != null && isbnKeys.remove(isbnKey) && isbnKeys.isEmpty()) {
+            reverse.remove(authorID);
+        }
+    }
+
+    private void checkOpen() throws StorageException {
+        if (channel == null || closed) {
+            throw new StorageException("The catalog log is not open", failure);
+        }
+    }
+
+    private void checkAuthorExists(int authorID) throws StorageException {
+        if (!authors.containsKey(authorID)) {
+            throw new StorageException("No author with ID " + authorID);
+        }
+    }
+
+    private static Book copyOf(Book book) {
+        Book copy = new Book(book.getIsbnKey(), book.getTitle(), book.getEditionNumber(), book.getCopyright());
+        copy.setVersion(book.getVersion());
+        return copy;
+    }
+
+    private static Author copyOf(Author author) {
+        Author copy = new Author(author.getAuthorID(), author.getFirstName(), author.getLastName());
+        copy.setVersion(author.getVersion());
+        return copy;
+    }
+}
@@ -0,0 +1,241 @@
+package org.lab1;
+
+import java.sql.*;
+import java.util.Random;
+
+/**
+ * Measures the catalog's load and lookup queries before and after the schema migrations in
+ * {@link CatalogMigrations}, and checks that re-running the migrations changes nothing.
+ * <p>
+ * The benchmark creates the tables from {@code books.sql} in a scratch database, fills them
+ * with synthetic authors, titles and links (including a few duplicate links, which the
+ * original schema allows), and times the queries. It then applies the migrations, times the
+ * same queries again and runs the migrations a second time, which should apply none.
+ * </p>
+ * <p>
+ * The scratch database {@value #DATABASE} is dropped and recreated on every run. The server
+ * and credentials are taken from {@code books.benchmark.url}, {@code books.db.user} and
+ * {@code books.db.password}.
+ * </p>
+ * <p>
+ * Usage: {@code java -cp target/classes:mariadb-java-client.jar org.lab1.SchemaBenchmark
+ * [authors] [titles] [lookups]} (defaults 20000, 100000 and 2000).
+ * </p>
+ */
+public class SchemaBenchmark {
+    private static final String DATABASE = "books_benchmark";
+    private static final int AUTHORS_PER_TITLE = 3;
+    private static final int LOAD_ROUNDS = 3;
+    private static final int BATCH_SIZE = 5000;
+
+    /**
+     * Runs the benchmark and prints the results.
+     *
+     * @param args optional numbers of authors, titles and timed lookups per query
+     * @throws SQLException if the database cannot be set up or a query fails
+     */
+    public static void main(String[] args) throws SQLException {
+        int authors = args.length > 0 ? Integer.parseInt(args[0]) : 20_000;
+        int titles = args.length > 1 ? Integer.parseInt(args[1]) : 100_000;
+        int lookups = args.length > 2 ? Integer.parseInt(args[2]) : 2_000;
+        String url = System.getProperty("books.benchmark.url", "jdbc:mariadb://localhost:3306/");
+        String user = System.getProperty("books.db.user", "root");
+        String password = System.getProperty("books.db.password", "1qaz2w");
+
+        try (Connection conn = DriverManager.getConnection(url, user, password)) {
+            createSchema(conn);
+            int links = fill(conn, authors, titles);
+            System.out.printf("%d authors, %d titles, %d links (with duplicates)%n", authors, titles, links);
+
+            System.out.println("Before migrations:");
+            time(conn, authors, titles, lookups);
+
+            SchemaMigrator migrator = new SchemaMigrator(CatalogMigrations.all());
+            long start = System.nanoTime();
+            int applied = migrator.migrate(conn);
+            System.out.printf("Applied %d migrations in %d ms%n", applied, (System.nanoTime() - start) / 1_000_000);
+
+            System.out.println("After migrations:");
+            time(conn, authors, titles, lookups);
+
+            int reapplied = migrator.migrate(conn);
+            System.out.printf("Re-run applied %d migrations%n", reapplied);
+            if (reapplied != 0) {
+                throw new IllegalStateException("Migrations were applied twice");
+            }
+        }
+    }
+
+    /**
+     * Recreates the scratch database with the tables from {@code books.sql}.
+     */
+    private static void createSchema(Connection conn) throws SQLException {
+        try (Statement st = conn.createStatement()) {
+            st.executeUpdate("DROP DATABASE IF EXISTS " + DATABASE);
+            st.executeUpdate("CREATE DATABASE " + DATABASE);
+            conn.setCatalog(DATABASE);
+            st.executeUpdate("CREATE TABLE authors ("
+                    + "authorID INT NOT NULL AUTO_INCREMENT, "
+                    + "firstName varchar (20) NOT NULL, "
+                    + "lastName varchar (30) NOT NULL, "
+                    + "PRIMARY KEY (authorID))");
+            st.executeUpdate("CREATE TABLE titles ("
+                    + "isbn varchar (20) NOT NULL, "
+                    + "title varchar (100) NOT NULL, "
+                    + "editionNumber INT NOT NULL, "
+                    + "copyright varchar (4) NOT NULL, "
+                    + "PRIMARY KEY (isbn))");
+            st.executeUpdate("CREATE TABLE authorISBN ("
+                    + "authorID INT NOT NULL, "
+                    + "isbn varchar (20) NOT NULL, "
+                    + "FOREIGN KEY (authorID) REFERENCES authors (authorID), "
+                    + "FOREIGN KEY (isbn) REFERENCES titles (isbn))");
+        }
+    }
+
+    /**
+     * Inserts the synthetic catalog. Every title gets up to {@link #AUTHORS_PER_TITLE} authors,
+     * and every hundredth link is inserted twice.
+     *
+     * @return the number of authorISBN rows inserted
+     */
+    private static int fill(Connection conn, int authors, int titles) throws SQLException {
+        Random random = new Random(42);
+        int links = 0;
+        conn.setAutoCommit(false);
+        try (PreparedStatement authorInsert = conn.prepareStatement(
+                "INSERT INTO authors (authorID, firstName, lastName) VALUES (?, ?, ?)");
+             PreparedStatement titleInsert = conn.prepareStatement(
+                     "INSERT INTO titles (isbn, title, editionNumber, copyright) VALUES (?, ?, ?, ?)");
+             PreparedStatement linkInsert = conn.prepareStatement(
+                     "INSERT INTO authorISBN (authorID, isbn) VALUES (?, ?)")) {
+            for (int i = 1; i <= authors; i++) {
+                authorInsert.setInt(1, i);
+                authorInsert.setString(2, firstName(i));
+                authorInsert.setString(3, lastName(i));
+                authorInsert.addBatch();
+                if (i % BATCH_SIZE == 0) {
+                    authorInsert.executeBatch();
+                }
+            }
+            authorInsert.executeBatch();
+            for (int i = 0; i < titles; i++) {
+                titleInsert.setString(1, isbn(i));
+                titleInsert.setString(2, "Title " + i);
+                titleInsert.setInt(3, 1 + i % 5);
+                titleInsert.setString(4, String.valueOf(1990 + i % 35));
+                titleInsert.addBatch();
+                int count = 1 + random.nextInt(AUTHORS_PER_TITLE);
+                int first = 1 + random.nextInt(authors);
+                for (int j = 0; j < count; j++) {
+                    linkInsert.setInt(1, 1 + (first + j) % authors);
+                    linkInsert.setString(2, isbn(i));
+                    linkInsert.addBatch();
+                    links++;
+                    if (links % 100 == 0) {
+                        linkInsert.addBatch();
+                        links++;
+                    }
+                }
+                if (i % BATCH_SIZE == 0) {
+                    titleInsert.executeBatch();
+                    linkInsert.executeBatch();
+                }
+            }
+            titleInsert.executeBatch();
+            linkInsert.executeBatch();
+            conn.commit();
+        } finally {
+            conn.setAutoCommit(true);
+        }
+        try (Statement st = conn.createStatement()) {
+            st.execute("ANALYZE TABLE authors, titles, authorISBN");
+        }
+        return links;
+    }
+
+    /**
+     * Times a full catalog load and each of the point lookups, and prints the results. The
+     * lookups are run once untimed first, so that the JIT and the buffer pool are warm.
+     */
+    private static void time(Connection conn, int authors, int titles, int lookups) throws SQLException {
+        long bestLoad = Long.MAX_VALUE;
+        for (int round = 0; round < LOAD_ROUNDS; round++) {
+            long start = System.nanoTime();
+            scan(conn, "SELECT * FROM titles");
+            scan(conn, "SELECT * FROM authors");
+            scan(conn, "SELECT * FROM authorISBN");
+            bestLoad = Math.min(bestLoad, System.nanoTime() - start);
+        }
+        System.out.printf("  load all tables:        %8d ms%n", bestLoad / 1_000_000);
+
+        Random random = new Random(7);
+        try (PreparedStatement byIsbn = conn.prepareStatement("SELECT authorID FROM authorISBN WHERE isbn = ?");
+             PreparedStatement byAuthor = conn.prepareStatement("SELECT isbn FROM authorISBN WHERE authorID = ?");
+             PreparedStatement byLink = conn.prepareStatement(
+                     "SELECT COUNT(*) FROM authorISBN WHERE authorID = ? AND isbn = ?");
+             PreparedStatement byName = conn.prepareStatement(
+                     "SELECT authorID FROM authors WHERE lastName = ? AND firstName = ?")) {
+            long isbnNanos = 0;
+            long authorNanos = 0;
+            long linkNanos = 0;
+            long nameNanos = 0;
+            for (int i = 0; i < 2 * lookups; i++) {
+                if (i == lookups) {
+                    isbnNanos = 0;
+                    authorNanos = 0;
+                    linkNanos = 0;
+                    nameNanos = 0;
+                }
+                String isbn = isbn(random.nextInt(titles));
+                int authorID = 1 + random.nextInt(authors);
+
+                byIsbn.setString(1, isbn);
+                isbnNanos += timeQuery(byIsbn);
+                byAuthor.setInt(1, authorID);
+                authorNanos += timeQuery(byAuthor);
+                byLink.setInt(1, authorID);
+                byLink.setString(2, isbn);
+                linkNanos += timeQuery(byLink);
+                byName.setString(1, lastName(authorID));
+                byName.setString(2, firstName(authorID));
+                nameNanos += timeQuery(byName);
+            }
+            System.out.printf("  authors of a title:     %8d us/query%n", isbnNanos / lookups / 1000);
+            System.out.printf("  titles of an author:    %8d us/query%n", authorNanos / lookups / 1000);
+            System.out.printf("  one author-title link:  %8d us/query%n", linkNanos / lookups / 1000);
+            System.out.printf("  author by name:         %8d us/query%n", nameNanos / lookups / 1000);
+        }
+    }
+
+    private static void scan(Connection conn, String sql) throws SQLException {
+        try (Statement st = conn.createStatement();
+             ResultSet rs = st.executeQuery(sql)) {
+            while (rs.next()) {
+                rs.getString(1);
+            }
+        }
+    }
+
+    private static long timeQuery(PreparedStatement ps) throws SQLException {
+        long start = System.nanoTime();
+        try (ResultSet rs = ps.executeQuery()) {
+            while (rs.next()) {
+                rs.getString(1);
+            }
+        }
+        return System.nanoTime() - start;
+    }
+
+    private static String isbn(int n) {
+        return String.format("978%010d", n);
+    }
+
+    private static String firstName(int authorID) {
+        return "First" + authorID % 997;
+    }
+
+    private static String lastName(int authorID) {
+        return "Last" + authorID / 997;
+    }
+}
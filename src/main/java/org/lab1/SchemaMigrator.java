@@ -0,0 +1,164 @@
+package org.lab1;
+
+import java.sql.*;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Applies versioned schema migrations to the database, in order, exactly once each.
+ * <p>
+ * Applied versions are recorded in the {@code schemaVersion} table. Because MariaDB commits
+ * DDL statements immediately, a migration that was interrupted before its version was recorded
+ * will run again, so every migration must also be safe to repeat. A named database lock keeps
+ * several application instances starting at the same time from migrating concurrently.
+ * </p>
+ */
+public class SchemaMigrator {
+    private static final String LOCK_NAME = "books_schema_migration";
+    private static final int LOCK_TIMEOUT_SECONDS = 60;
+
+    /**
+     * The work done by one migration.
+     */
+    public interface Step {
+        /**
+         * Applies the migration.
+         *
+         * @param conn the connection to migrate through
+         * @throws SQLException if a database access error occurs
+         */
+        void apply(Connection conn) throws SQLException;
+    }
+
+    /**
+     * A single schema change with its version number.
+     */
+    public static class Migration {
+        private final int version;
+        private final String description;
+        private final Step step;
+
+        /**
+         * Constructs a migration.
+         *
+         * @param version     the version number; migrations run in ascending order
+         * @param description a short description recorded with the version
+         * @param step        the work to do, which must be safe to repeat
+         */
+        public Migration(int version, String description, Step step) {
+            this.version = version;
+            this.description = description;
+            this.step = step;
+        }
+
+        /**
+         * Returns the version number.
+         *
+         * @return the version
+         */
+        public int getVersion() {
+            return version;
+        }
+
+        /**
+         * Returns the description.
+         *
+         * @return the description
+         */
+        public String getDescription() {
+            return description;
+        }
+    }
+
+    private final List<Migration> migrations;
+
+    /**
+     * Constructs a migrator for the given migrations.
+     *
+     * @param migrations the migrations, in strictly ascending version order
+     * @throws IllegalArgumentException if the versions are not strictly ascending
+     */
+    public SchemaMigrator(List<Migration> migrations) {
+        for (int i = 1; i < migrations.size(); i++) {
+            if (migrations.get(i).getVersion() <= migrations.get(i - 1).getVersion()) {
+                throw new IllegalArgumentException("Migration V" + migrations.get(i).getVersion()
+                        + " is out of order");
+            }
+        }
+        this.migrations = new ArrayList<>(migrations);
+    }
+
+    /**
+     * Applies every migration that has not been recorded as applied.
+     *
+     * @param conn a connection to the primary database
+     * @return the number of migrations applied
+     * @throws SQLException if the lock cannot be taken or a migration fails
+     */
+    public int migrate(Connection conn) throws SQLException {
+        acquireLock(conn);
+        try {
+            try (Statement st = conn.createStatement()) {
+                st.executeUpdate("CREATE TABLE IF NOT EXISTS schemaVersion ("
+                        + "version INT NOT NULL, "
+                        + "description varchar (200) NOT NULL, "
+                        + "appliedAt TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP, "
+                        + "PRIMARY KEY (version))");
+            }
+            Set<Integer> applied = appliedVersions(conn);
+            int count = 0;
+            for (Migration migration : migrations) {
+                if (applied.contains(migration.getVersion())) {
+                    continue;
+                }
+                migration.step.apply(conn);
+                try (PreparedStatement ps = conn.prepareStatement(
+                        "INSERT INTO schemaVersion (version, description) VALUES (?, ?)")) {
+                    ps.setInt(1, migration.getVersion());
+                    ps.setString(2, migration.getDescription());
+                    ps.executeUpdate();
+                }
+                System.out.println("Applied schema migration V" + migration.getVersion()
+                        + ": " + migration.getDescription());
+                count++;
+            }
+            return count;
+        } finally {
+            releaseLock(conn);
+        }
+    }
+
+    private static Set<Integer> appliedVersions(Connection conn) throws SQLException {
+        Set<Integer> versions = new HashSet<>();
+        try (PreparedStatement ps = conn.prepareStatement("SELECT version FROM schemaVersion");
+             ResultSet rs = ps.executeQuery()) {
+            while (rs.next()) {
+                versions.add(rs.getInt("version"));
+            }
+        }
+        return versions;
+    }
+
+    private static void acquireLock(Connection conn) throws SQLException {
+        try (PreparedStatement ps = conn.prepareStatement("SELECT GET_LOCK(?, ?)")) {
+            ps.setString(1, LOCK_NAME);
+            ps.setInt(2, LOCK_TIMEOUT_SECONDS);
+            try (ResultSet rs = ps.executeQuery()) {
+                if (!rs.next() || rs.getInt(1) != 1) {
+                    throw new SQLException("Timed out waiting for the schema migration lock");
+                }
+            }
+        }
+    }
+
+    private static void releaseLock(Connection conn) {
+        try (PreparedStatement ps = conn.prepareStatement("SELECT RELEASE_LOCK(?)")) {
+            ps.setString(1, LOCK_NAME);
+            ps.executeQuery().close();
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package org.lab1;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Records how long the application takes to start responding and to finish loading the catalog.
+ * <p>
+ * Both times are measured from when the metrics object is created, which
+ * {@link BookDatabaseManager} does in its constructor.
+ * </p>
+ */
+public class StartupMetrics {
+    private final long startNanos = System.nanoTime();
+    private final AtomicLong firstResponseNanos = new AtomicLong(-1);
+    private final AtomicLong warmNanos = new AtomicLong(-1);
+
+    /**
+     * Records that the first response was served. Only the first call has an effect.
+     */
+    public void recordFirstResponse() {
+        firstResponseNanos.compareAndSet(-1, System.nanoTime() - startNanos);
+    }
+
+    /**
+     * Records that the catalog is fully loaded. Only the first call has an effect.
+     */
+    public void recordWarm() {
+        warmNanos.compareAndSet(-1, System.nanoTime() - startNanos);
+    }
+
+    /**
+     * Returns the time from startup to the first response.
+     *
+     * @return the time in milliseconds, or -1 if there has been no response yet
+     */
+    public long getTimeToFirstResponseMillis() {
+        return toMillis(firstResponseNanos.get());
+    }
+
+    /**
+     * Returns the time from startup until the catalog was fully loaded.
+     *
+     * @return the time in milliseconds, or -1 if loading has not finished
+     */
+    public long getTimeToFullyWarmMillis() {
+        return toMillis(warmNanos.get());
+    }
+
+    private static long toMillis(long nanos) {
+        return nanos < 0 ? -1 : nanos / 1_000_000;
+    }
+
+    /**
+     * Returns both metrics in a form suitable for printing.
+     *
+     * @return a string containing the startup times
+     */
+    @Override
+    public String toString() {
+        return "time-to-first-response: " + describe(getTimeToFirstResponseMillis())
+                + ", time-to-fully-warm: " + describe(getTimeToFullyWarmMillis());
+    }
+
+    private static String describe(long millis) {
+        return millis < 0 ? "n/a" : millis + " ms";
+    }
+}
@@ -0,0 +1,31 @@
+package org.lab1;
+
+/**
+ * Signals that a {@link CatalogStorage} backend could not complete an operation.
+ * <p>
+ * Wraps the backend-specific cause, such as a {@link java.sql.SQLException} from the JDBC
+ * backend or an {@link java.io.IOException} from the embedded log backend.
+ * </p>
+ */
+public class StorageException extends Exception {
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Constructs a StorageException with the given message.
+     *
+     * @param message the detail message
+     */
+    public StorageException(String message) {
+        super(message);
+    }
+
+    /**
+     * Constructs a StorageException wrapping a backend error.
+     *
+     * @param message the detail message
+     * @param cause   the underlying error
+     */
+    public StorageException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
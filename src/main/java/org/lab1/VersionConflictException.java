@@ -0,0 +1,23 @@
+package org.lab1;
+
+/**
+ * Signals that an update was rejected because the stored row has changed since the caller
+ * read it.
+ * <p>
+ * Thrown by {@link CatalogStorage#updateBook(Book)} and {@link CatalogStorage#updateAuthor(Author)}
+ * when the version of the object passed in no longer matches the stored version, which means
+ * another writer has updated the row in the meantime.
+ * </p>
+ */
+public class VersionConflictException extends StorageException {
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Constructs a VersionConflictException with the given message.
+     *
+     * @param message the detail message
+     */
+    public VersionConflictException(String message) {
+        super(message);
+    }
+}